@@ -0,0 +1,360 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.bench;
+
+import net.risenphoenix.commons.Plugin;
+import net.risenphoenix.commons.commands.Command;
+import net.risenphoenix.commons.commands.CommandManager;
+import net.risenphoenix.commons.commands.CommandType;
+import net.risenphoenix.commons.commands.Pooled;
+import net.risenphoenix.commons.commands.Stateless;
+import net.risenphoenix.commons.database.DatabaseManager;
+import net.risenphoenix.commons.database.WriteBehindQueue;
+import net.risenphoenix.commons.localization.LocalizationManager;
+import net.risenphoenix.commons.stores.CommandStore;
+import net.risenphoenix.commons.util.PermissionCache;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.PluginDescriptionFile;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Shared fixtures for the benchmarks: a Plugin that can parse and dispatch
+ * Commands without a running server, a stub CommandSender, and registries
+ * of generated Commands.
+ */
+final class BenchSupport {
+
+    static final String ROOT = "bench";
+
+    private BenchSupport() { }
+
+    /**
+     * Returns a Plugin whose managers are initialized as they would be by
+     * onEnable(), without requiring a Server.
+     *
+     * @return Plugin
+     */
+    static Plugin newPlugin() {
+        Plugin plugin = newInstance(Plugin.class);
+
+        inject(plugin, "LM", new LocalizationManager(plugin, "en"));
+        inject(plugin, "PC", new PermissionCache());
+        inject(plugin, "CM", new CommandManager(plugin));
+
+        return plugin;
+    }
+
+    /**
+     * Returns a new instance of the Plugin class passed, constructed outside
+     * the server.</br>
+     * <p/>
+     * </br>Current versions of Bukkit refuse to run JavaPlugin() outside a
+     * PluginClassLoader. There, the instance is allocated without running
+     * any constructor, and the fields Plugin initializes itself are set
+     * here. Fields initialized by a subclass are left at their defaults, so
+     * a subclass must set up its state in onStartup().
+     *
+     * @param type
+     * @return T
+     */
+    static <T extends Plugin> T newInstance(Class<T> type) {
+        try {
+            Constructor<T> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor.newInstance();
+        } catch (InvocationTargetException e) {
+            if (!(e.getCause() instanceof IllegalStateException)) {
+                throw new IllegalStateException("Could not construct " +
+                        "Plugin: " + type.getName(), e.getCause());
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not construct Plugin: " +
+                    type.getName(), e);
+        }
+
+        T plugin = allocate(type);
+
+        inject(plugin, "WBQ", new CopyOnWriteArrayList<WriteBehindQueue>());
+        inject(plugin, "DBM", new CopyOnWriteArrayList<DatabaseManager>());
+        inject(plugin, "pluginColor", ChatColor.GOLD);
+        inject(plugin, "messageColor", ChatColor.WHITE);
+        inject(plugin, "description", new PluginDescriptionFile(
+                type.getSimpleName(), "bench", type.getName()), false);
+
+        return plugin;
+    }
+
+    // Allocates an instance of the class passed without running any of its
+    // constructors, as deserialization does
+    private static <T> T allocate(Class<T> type) {
+        try {
+            Class<?> factory = Class.forName("sun.reflect.ReflectionFactory");
+            Object instance = factory.getMethod("getReflectionFactory")
+                    .invoke(null);
+            Constructor<?> constructor = (Constructor<?>) factory.getMethod(
+                    "newConstructorForSerialization", Class.class,
+                    Constructor.class).invoke(instance, type,
+                    Object.class.getDeclaredConstructor());
+
+            return type.cast(constructor.newInstance());
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not allocate Plugin: " +
+                    type.getName(), e);
+        }
+    }
+
+    /**
+     * Registers <i>size</i> Commands of the CommandType passed with the
+     * Plugin's CommandManager. Command <i>i</i> is called by
+     * <i>/bench g&lt;i&gt; run</i> when STATIC, and by
+     * <i>/bench g&lt;i&gt; &lt;value&gt;</i> otherwise. Commands registered
+     * before are replaced.
+     *
+     * @param plugin
+     * @param type
+     * @param size
+     * @return List<Command>
+     */
+    static List<Command> register(Plugin plugin, CommandType type, int size) {
+        return register(plugin, type, size, "fresh");
+    }
+
+    /**
+     * Registers Commands as register(Plugin, CommandType, int) does, whose
+     * instances are created as named: <i>fresh</i> for every call,
+     * <i>pooled</i> or <i>stateless</i>.
+     *
+     * @param plugin
+     * @param type
+     * @param size
+     * @param instances
+     * @return List<Command>
+     */
+    static List<Command> register(Plugin plugin, CommandType type, int size,
+                                  String instances) {
+        List<Command> commands = new ArrayList<Command>(size);
+
+        // One store, so that the registry is built once, not once per Command
+        CommandStore store = new CommandStore(plugin) {
+            @Override
+            public void initializeStore() {
+                // Filled below
+            }
+        };
+
+        for (int i = 0; i < size; i++) {
+            String last = (type == CommandType.STATIC) ? "run" : "VAR_ARG";
+            String[] callArgs = new String[]{ROOT, "g" + i, last};
+            Command cmd;
+
+            if (instances.equals("pooled")) {
+                cmd = new PooledBenchCommand(plugin, callArgs, type);
+            } else if (instances.equals("stateless")) {
+                cmd = new StatelessBenchCommand(plugin, callArgs, type);
+            } else {
+                cmd = new BenchCommand(plugin, callArgs, type);
+            }
+
+            cmd.setName("bench-" + i);
+            cmd.setConsoleExecutable(true);
+
+            store.add(cmd);
+            commands.add(cmd);
+        }
+
+        plugin.getCommandManager().registerStore(store);
+        return commands;
+    }
+
+    /**
+     * Returns the input, root command included, for the kind of call passed
+     * against the middle Command of a registry of the size passed.
+     *
+     * @param type
+     * @param size
+     * @param input one of <i>hit</i>, <i>miss</i> or <i>argError</i>
+     * @return String[]
+     */
+    static String[] input(CommandType type, int size, String input) {
+        String group = "g" + (size / 2);
+
+        if (input.equals("miss")) {
+            return new String[]{ROOT, "missing", "run"};
+        } else if (input.equals("argError")) {
+            return new String[]{ROOT, group};
+        } else if (type == CommandType.STATIC) {
+            return new String[]{ROOT, group, "run"};
+        } else if (type == CommandType.VARIABLE) {
+            return new String[]{ROOT, group, "value"};
+        } else {
+            return new String[]{ROOT, group, "value", "more", "args"};
+        }
+    }
+
+    /**
+     * Returns a Player that holds every permission, and ignores any message
+     * sent to it.
+     *
+     * @return CommandSender
+     */
+    static CommandSender newSender() {
+        final UUID id = UUID.randomUUID();
+
+        return (CommandSender) Proxy.newProxyInstance(
+                Player.class.getClassLoader(), new Class<?>[]{Player.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method,
+                                         Object[] args) {
+                        String name = method.getName();
+
+                        if (name.equals("getUniqueId")) return id;
+                        if (name.equals("getName")) return "BenchPlayer";
+                        if (name.equals("hashCode")) return id.hashCode();
+                        if (name.equals("equals")) return proxy == args[0];
+                        if (name.equals("toString")) return "BenchPlayer";
+
+                        return defaultValue(method.getReturnType());
+                    }
+                });
+    }
+
+    /**
+     * Returns the root command that Bukkit would pass to onCommand().
+     *
+     * @return org.bukkit.command.Command
+     */
+    static org.bukkit.command.Command newRoot() {
+        return new org.bukkit.command.Command(ROOT) {
+            @Override
+            public boolean execute(CommandSender sender, String label,
+                                   String[] args) {
+                return true;
+            }
+        };
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) return Boolean.TRUE;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        if (type == double.class) return 0.0D;
+        if (type == float.class) return 0.0F;
+        if (type == short.class) return (short) 0;
+        if (type == byte.class) return (byte) 0;
+        if (type == char.class) return (char) 0;
+
+        return null;
+    }
+
+    private static void inject(Plugin plugin, String field, Object value) {
+        inject(plugin, field, value, true);
+    }
+
+    /**
+     * Sets the field named on the Plugin passed, searching its superclasses.
+     * A missing field is an error only if <i>required</i> is true.
+     *
+     * @param plugin
+     * @param field
+     * @param value
+     * @param required
+     */
+    static void inject(Plugin plugin, String field, Object value,
+                       boolean required) {
+        for (Class<?> type = plugin.getClass(); type != null;
+             type = type.getSuperclass()) {
+            try {
+                Field f = type.getDeclaredField(field);
+                f.setAccessible(true);
+                f.set(plugin, value);
+                return;
+            } catch (NoSuchFieldException e) {
+                // Declared further up, if at all
+            } catch (Exception e) {
+                throw new IllegalStateException("Could not initialize " +
+                        "Plugin field: " + field, e);
+            }
+        }
+
+        if (required) {
+            throw new IllegalStateException("Could not initialize Plugin " +
+                    "field: " + field);
+        }
+    }
+
+    /**
+     * A Command doing no work of its own, so that only the framework is
+     * measured.
+     */
+    public static class BenchCommand extends Command {
+
+        public BenchCommand(final Plugin plugin, String[] callArgs,
+                            CommandType type) {
+            super(plugin, callArgs, type);
+        }
+
+        @Override
+        public void onExecute(CommandSender sender, String[] args) {
+            // Nothing to do
+        }
+    }
+
+    @Pooled
+    public static class PooledBenchCommand extends BenchCommand {
+
+        public PooledBenchCommand(final Plugin plugin, String[] callArgs,
+                                  CommandType type) {
+            super(plugin, callArgs, type);
+        }
+    }
+
+    @Stateless
+    public static class StatelessBenchCommand extends BenchCommand {
+
+        public StatelessBenchCommand(final Plugin plugin, String[] callArgs,
+                                     CommandType type) {
+            super(plugin, callArgs, type);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.bench;
+
+import net.risenphoenix.commons.Plugin;
+import net.risenphoenix.commons.commands.CommandType;
+import org.bukkit.command.CommandSender;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the full path of Plugin.onCommand(): parsing, throttling, Command
+ * construction, the permission check and execution of a Command which does
+ * nothing. Misses and argument errors include sending the error message to
+ * the (stub) CommandSender, and misses include the suggestion search.
+ * <i>instances</i> selects whether each call constructs a new Command, is
+ * served from a pool, or reuses the registered Command.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int size;
+
+    @Param({"STATIC", "VARIABLE", "DYNAMIC"})
+    public CommandType type;
+
+    @Param({"hit", "miss", "argError"})
+    public String input;
+
+    @Param({"fresh", "pooled", "stateless"})
+    public String instances;
+
+    private Plugin plugin;
+    private CommandSender sender;
+    private org.bukkit.command.Command root;
+    private String[] args;
+
+    @Setup
+    public void setUp() {
+        this.plugin = BenchSupport.newPlugin();
+        BenchSupport.register(this.plugin, this.type, this.size,
+                this.instances);
+
+        this.sender = BenchSupport.newSender();
+        this.root = BenchSupport.newRoot();
+
+        // Bukkit passes the arguments without the root command
+        String[] full = BenchSupport.input(this.type, this.size, this.input);
+        this.args = Arrays.copyOfRange(full, 1, full.length);
+    }
+
+    @Benchmark
+    public boolean dispatch() {
+        return this.plugin.onCommand(this.sender, this.root, BenchSupport.ROOT,
+                this.args);
+    }
+}
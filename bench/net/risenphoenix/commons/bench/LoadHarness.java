@@ -0,0 +1,628 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.bench;
+
+import net.risenphoenix.commons.Plugin;
+import net.risenphoenix.commons.util.LatencyHistogram;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a Plugin's onCommand() method with synthetic traffic from many
+ * Players, without a Minecraft server, and reports throughput, latency
+ * percentiles and allocation per call.</br>
+ * <p/>
+ * </br>Traffic is a weighted mix of command templates. In a template,
+ * <i>{player}</i> is replaced by the name of a random Player, <i>{self}</i>
+ * by the name of the calling Player, and <i>{n}</i> by a random number
+ * below 1000. Calls are prepared before the run, so the harness itself
+ * allocates nothing while measuring.</br>
+ * <p/>
+ * </br>When a rate is set, each thread issues calls on a fixed schedule and
+ * latency is measured from the time a call was due rather than the time it
+ * was made, so that a stalled call is not hidden by the calls queued behind
+ * it. Without a rate, each thread calls as fast as it can. Commands which
+ * execute asynchronously are measured only until they are handed off.</br>
+ * <p/>
+ * </br>As on a Bukkit server, calls execute one at a time on a single
+ * thread reported as the main thread; the other threads only send calls
+ * and wait for them to complete, so latency includes the time a call
+ * waited for the ones ahead of it. Allocation is measured on that thread.
+ * Synchronous tasks still run on the StandInServer's own main thread,
+ * alongside the calls, so components which expect tasks and commands to
+ * share one thread are not supported.
+ * <p/>
+ * </br>From the command line:
+ * <pre>
+ * java net.risenphoenix.commons.bench.LoadHarness &lt;plugin class&gt;
+ *     [--players n] [--threads n] [--rate calls/s] [--warmup s]
+ *     [--duration s] [--perm node]... [--no-op] --cmd [weight:]command...
+ * </pre>
+ */
+public class LoadHarness {
+
+    private static final int PREPARED_CALLS = 4096;
+    private static final Method ALLOCATED_BYTES = allocatedBytesMethod();
+
+    private final Plugin plugin;
+    private final List<Template> templates = new ArrayList<Template>();
+    private final List<String> permissions = new ArrayList<String>();
+
+    private int players = 100;
+    private int threads = 4;
+    private double rate = 0;
+    private long warmupMillis = 2000;
+    private long durationMillis = 10000;
+    private boolean operators = true;
+    private long seed = 42;
+
+    public LoadHarness(final Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Adds a command template, called in proportion to the weight passed.
+     * The template is the command as a Player would type it, with or
+     * without the leading slash.
+     *
+     * @param weight
+     * @param template
+     * @return LoadHarness
+     */
+    public final LoadHarness addCommand(int weight, String template) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("Weight must be positive: " +
+                    weight);
+        }
+
+        String line = template.trim();
+        if (line.startsWith("/")) line = line.substring(1);
+
+        String[] tokens = line.split("\\s+");
+        if (tokens[0].isEmpty()) {
+            throw new IllegalArgumentException("Empty command template");
+        }
+
+        this.templates.add(new Template(weight, line, tokens));
+        return this;
+    }
+
+    public final LoadHarness setPlayers(int players) {
+        this.players = Math.max(1, players);
+        return this;
+    }
+
+    public final LoadHarness setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+        return this;
+    }
+
+    /**
+     * Sets the total number of calls per second across all threads, or 0 to
+     * call as fast as possible.
+     *
+     * @param rate
+     * @return LoadHarness
+     */
+    public final LoadHarness setRate(double rate) {
+        this.rate = Math.max(0, rate);
+        return this;
+    }
+
+    public final LoadHarness setWarmup(long time, TimeUnit unit) {
+        this.warmupMillis = unit.toMillis(time);
+        return this;
+    }
+
+    public final LoadHarness setDuration(long time, TimeUnit unit) {
+        this.durationMillis = Math.max(1, unit.toMillis(time));
+        return this;
+    }
+
+    /**
+     * Sets whether the synthetic Players are operators, holding every
+     * permission. When they are not, they hold only the permissions added
+     * with addPermission().
+     *
+     * @param operators
+     * @return LoadHarness
+     */
+    public final LoadHarness setOperators(boolean operators) {
+        this.operators = operators;
+        return this;
+    }
+
+    public final LoadHarness addPermission(String node) {
+        this.permissions.add(node);
+        return this;
+    }
+
+    public final LoadHarness setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Enables the Plugin on a StandInServer, runs the warmup and measured
+     * phases, disables the Plugin and returns the measurements.
+     *
+     * @return LoadReport
+     * @throws InterruptedException
+     */
+    public final LoadReport run() throws InterruptedException {
+        if (this.templates.isEmpty()) {
+            throw new IllegalStateException("No command templates added");
+        }
+
+        StandInServer server = new StandInServer();
+        File dataFolder = new File(System.getProperty("java.io.tmpdir"),
+                "rp-commons-load");
+
+        try {
+            server.enable(this.plugin, dataFolder);
+
+            Player[] online = new Player[this.players];
+            for (int i = 0; i < online.length; i++) {
+                online[i] = server.createPlayer("Player" + i,
+                        this.operators, this.permissions);
+            }
+
+            return this.measure(server, online);
+        } finally {
+            server.disable(this.plugin);
+            server.shutdown();
+        }
+    }
+
+    private LoadReport measure(StandInServer server, Player[] online)
+            throws InterruptedException {
+        final LatencyHistogram total = new LatencyHistogram();
+        final LatencyHistogram[] byTemplate =
+                new LatencyHistogram[this.templates.size()];
+        for (int i = 0; i < byTemplate.length; i++) {
+            byTemplate[i] = new LatencyHistogram();
+        }
+
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong allocated = new AtomicLong();
+        final long intervalNanos = (this.rate == 0) ? 0 :
+                (long) (1.0e9D * this.threads / this.rate);
+
+        Random random = new Random(this.seed);
+        Worker[] workers = new Worker[this.threads];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Worker(this.prepare(random, online), total,
+                    byTemplate, errors, intervalNanos);
+        }
+
+        final CountDownLatch ready = new CountDownLatch(workers.length);
+        final CountDownLatch done = new CountDownLatch(workers.length);
+        long now = System.nanoTime();
+        long measureStart = now + TimeUnit.MILLISECONDS.toNanos(100 +
+                this.warmupMillis);
+        long measureEnd = measureStart +
+                TimeUnit.MILLISECONDS.toNanos(this.durationMillis);
+
+        // Bukkit dispatches commands on its main thread, one at a time
+        Dispatcher dispatcher = new Dispatcher(workers, allocated);
+        Thread main = new Thread(dispatcher, "LoadHarness-Main");
+        main.setDaemon(true);
+        dispatcher.thread = main;
+        server.addPrimaryThread(main);
+        main.start();
+
+        for (int i = 0; i < workers.length; i++) {
+            Thread thread = new Thread(workers[i].at(now, measureStart,
+                    measureEnd, dispatcher, ready, done), "LoadHarness-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        ready.await();
+
+        // Count messages sent during the measured phase only
+        while (System.nanoTime() < measureStart) {
+            long wait = measureStart - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+        }
+        long messagesBefore = server.getMessageCount();
+
+        done.await();
+        main.join();
+        server.removePrimaryThread(main);
+        long messages = server.getMessageCount() - messagesBefore;
+
+        List<LoadReport.Line> lines = new ArrayList<LoadReport.Line>();
+        for (int i = 0; i < byTemplate.length; i++) {
+            lines.add(new LoadReport.Line(this.templates.get(i).line,
+                    byTemplate[i]));
+        }
+
+        return new LoadReport(total.getCount(), errors.get(),
+                measureEnd - measureStart, allocated.get(), messages,
+                new LoadReport.Line("total", total), lines);
+    }
+
+    /**
+     * Resolves a sequence of calls for one thread to cycle through.
+     */
+    private Call[] prepare(Random random, Player[] online) {
+        int weights = 0;
+        for (Template template : this.templates) weights += template.weight;
+
+        Call[] calls = new Call[PREPARED_CALLS];
+
+        for (int i = 0; i < calls.length; i++) {
+            int pick = random.nextInt(weights);
+            int index = 0;
+
+            while (pick >= this.templates.get(index).weight) {
+                pick -= this.templates.get(index).weight;
+                index++;
+            }
+
+            Player sender = online[random.nextInt(online.length)];
+            calls[i] = this.templates.get(index).resolve(index, sender,
+                    online, random);
+        }
+
+        return calls;
+    }
+
+    /**
+     * Returns the bytes allocated so far by the current thread, or -1 if
+     * the JVM cannot tell.
+     */
+    private static long allocatedBytes() {
+        if (ALLOCATED_BYTES == null) return -1;
+
+        try {
+            return (Long) ALLOCATED_BYTES.invoke(
+                    ManagementFactory.getThreadMXBean(),
+                    Thread.currentThread().getId());
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    private static Method allocatedBytesMethod() {
+        try {
+            // com.sun.management.ThreadMXBean, where the JVM provides it
+            Class<?> type = Class.forName("com.sun.management.ThreadMXBean");
+            if (!type.isInstance(ManagementFactory.getThreadMXBean())) {
+                return null;
+            }
+
+            return type.getMethod("getThreadAllocatedBytes", long.class);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Usage: LoadHarness <plugin class> " +
+                    "[--players n] [--threads n] [--rate calls/s] " +
+                    "[--warmup s] [--duration s] [--perm node]... " +
+                    "[--no-op] --cmd [weight:]command...");
+            System.exit(2);
+        }
+
+        Plugin plugin = BenchSupport.newInstance(
+                Class.forName(args[0]).asSubclass(Plugin.class));
+        LoadHarness harness = new LoadHarness(plugin);
+
+        for (int i = 1; i < args.length; i++) {
+            String option = args[i];
+
+            if (option.equals("--no-op")) {
+                harness.setOperators(false);
+                continue;
+            }
+
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value: " +
+                        option);
+            }
+
+            String value = args[++i];
+
+            if (option.equals("--players")) {
+                harness.setPlayers(Integer.parseInt(value));
+            } else if (option.equals("--threads")) {
+                harness.setThreads(Integer.parseInt(value));
+            } else if (option.equals("--rate")) {
+                harness.setRate(Double.parseDouble(value));
+            } else if (option.equals("--warmup")) {
+                harness.setWarmup(Long.parseLong(value), TimeUnit.SECONDS);
+            } else if (option.equals("--duration")) {
+                harness.setDuration(Long.parseLong(value), TimeUnit.SECONDS);
+            } else if (option.equals("--perm")) {
+                harness.addPermission(value);
+            } else if (option.equals("--cmd")) {
+                int colon = value.indexOf(':');
+                boolean weighted = colon > 0 &&
+                        value.substring(0, colon).matches("\\d+");
+
+                harness.addCommand(weighted ?
+                        Integer.parseInt(value.substring(0, colon)) : 1,
+                        weighted ? value.substring(colon + 1) : value);
+            } else {
+                throw new IllegalArgumentException("Unknown option: " +
+                        option);
+            }
+        }
+
+        LoadReport report = harness.run();
+        System.out.println(report);
+
+        System.exit((report.getErrors() > 0) ? 1 : 0);
+    }
+
+    private static final class Template {
+
+        private final int weight;
+        private final String line;
+        private final String[] tokens;
+
+        private Template(int weight, String line, String[] tokens) {
+            this.weight = weight;
+            this.line = line;
+            this.tokens = tokens;
+        }
+
+        private Call resolve(int index, Player sender, Player[] online,
+                             Random random) {
+            String[] args = Arrays.copyOfRange(this.tokens, 1,
+                    this.tokens.length);
+
+            for (int i = 0; i < args.length; i++) {
+                args[i] = args[i]
+                        .replace("{self}", sender.getName())
+                        .replace("{player}",
+                                online[random.nextInt(online.length)]
+                                        .getName())
+                        .replace("{n}", String.valueOf(random.nextInt(1000)));
+            }
+
+            return new Call(index, sender, newRoot(this.tokens[0]),
+                    this.tokens[0], args);
+        }
+    }
+
+    private static org.bukkit.command.Command newRoot(String name) {
+        return new org.bukkit.command.Command(name) {
+            @Override
+            public boolean execute(CommandSender sender, String label,
+                                   String[] args) {
+                return true;
+            }
+        };
+    }
+
+    private static final class Call {
+
+        private final int template;
+        private final CommandSender sender;
+        private final org.bukkit.command.Command root;
+        private final String label;
+        private final String[] args;
+
+        private Call(int template, CommandSender sender,
+                     org.bukkit.command.Command root, String label,
+                     String[] args) {
+            this.template = template;
+            this.sender = sender;
+            this.root = root;
+            this.label = label;
+            this.args = args;
+        }
+    }
+
+    /**
+     * Executes the calls of all Workers, one at a time, on the thread
+     * reported as the server main thread.
+     */
+    private final class Dispatcher implements Runnable {
+
+        private final Worker[] workers;
+        private final AtomicLong allocated;
+        private volatile Thread thread;
+
+        private Dispatcher(Worker[] workers, AtomicLong allocated) {
+            this.workers = workers;
+            this.allocated = allocated;
+        }
+
+        @Override
+        public void run() {
+            long allocStart = -1;
+            boolean measuring = false;
+
+            while (true) {
+                boolean idle = true;
+                boolean finished = true;
+
+                for (Worker worker : this.workers) {
+                    Call call = worker.pending;
+
+                    if (call == null) {
+                        if (!worker.finished) finished = false;
+                        continue;
+                    }
+
+                    idle = false;
+                    finished = false;
+
+                    if (!measuring && worker.measuring) {
+                        measuring = true;
+                        allocStart = allocatedBytes();
+                    }
+
+                    try {
+                        worker.failed = false;
+                        plugin.onCommand(call.sender, call.root, call.label,
+                                call.args);
+                    } catch (RuntimeException e) {
+                        worker.failed = true;
+                    }
+
+                    worker.pending = null;
+                    LockSupport.unpark(worker.thread);
+                }
+
+                if (finished) break;
+                if (idle) LockSupport.park(this);
+            }
+
+            long allocEnd = allocatedBytes();
+
+            if (allocStart < 0 || allocEnd < 0) {
+                this.allocated.set(Long.MIN_VALUE);
+            } else {
+                this.allocated.set(allocEnd - allocStart);
+            }
+        }
+    }
+
+    /**
+     * Issues one thread's calls to the Dispatcher and measures them.
+     */
+    private final class Worker implements Runnable {
+
+        private final Call[] calls;
+        private final LatencyHistogram total;
+        private final LatencyHistogram[] byTemplate;
+        private final AtomicLong errors;
+        private final long intervalNanos;
+
+        private long start;
+        private long measureStart;
+        private long measureEnd;
+        private Dispatcher dispatcher;
+        private CountDownLatch ready;
+        private CountDownLatch done;
+
+        // Handed to the Dispatcher; cleared once the call has executed
+        private volatile Call pending;
+        private volatile boolean measuring;
+        private volatile boolean failed;
+        private volatile boolean finished;
+        private volatile Thread thread;
+
+        private Worker(Call[] calls, LatencyHistogram total,
+                       LatencyHistogram[] byTemplate, AtomicLong errors,
+                       long intervalNanos) {
+            this.calls = calls;
+            this.total = total;
+            this.byTemplate = byTemplate;
+            this.errors = errors;
+            this.intervalNanos = intervalNanos;
+        }
+
+        private Worker at(long start, long measureStart, long measureEnd,
+                          Dispatcher dispatcher, CountDownLatch ready,
+                          CountDownLatch done) {
+            this.start = start;
+            this.measureStart = measureStart;
+            this.measureEnd = measureEnd;
+            this.dispatcher = dispatcher;
+            this.ready = ready;
+            this.done = done;
+            return this;
+        }
+
+        @Override
+        public void run() {
+            this.thread = Thread.currentThread();
+
+            try {
+                this.ready.countDown();
+                this.loop();
+            } finally {
+                this.finished = true;
+                LockSupport.unpark(this.dispatcher.thread);
+                this.done.countDown();
+            }
+        }
+
+        private void loop() {
+            long due = this.start;
+            int next = 0;
+
+            while (true) {
+                long now = System.nanoTime();
+
+                if (this.intervalNanos > 0) {
+                    due += this.intervalNanos;
+                    if (due - now > 0) {
+                        LockSupport.parkNanos(due - now);
+                        now = System.nanoTime();
+                    }
+                } else {
+                    due = now;
+                }
+
+                if (due - this.measureEnd >= 0) break;
+
+                boolean measuring = due - this.measureStart >= 0;
+                Call call = this.calls[next];
+                next = (next + 1 == this.calls.length) ? 0 : next + 1;
+
+                this.measuring = measuring;
+                this.pending = call;
+                LockSupport.unpark(this.dispatcher.thread);
+
+                while (this.pending != null) LockSupport.park(this);
+
+                if (measuring) {
+                    if (this.failed) this.errors.incrementAndGet();
+
+                    long latency = System.nanoTime() - due;
+                    this.total.record(latency);
+                    this.byTemplate[call.template].record(latency);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.bench;
+
+import net.risenphoenix.commons.util.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The results of one run of a LoadHarness. Latencies are in nanoseconds.
+ */
+public final class LoadReport {
+
+    private final long ops;
+    private final long errors;
+    private final long elapsedNanos;
+    private final long allocatedBytes;
+    private final long messages;
+    private final Line total;
+    private final List<Line> lines;
+
+    LoadReport(long ops, long errors, long elapsedNanos, long allocatedBytes,
+               long messages, Line total, List<Line> lines) {
+        this.ops = ops;
+        this.errors = errors;
+        this.elapsedNanos = elapsedNanos;
+        this.allocatedBytes = allocatedBytes;
+        this.messages = messages;
+        this.total = total;
+        this.lines = Collections.unmodifiableList(new ArrayList<Line>(lines));
+    }
+
+    public long getOperations() {
+        return this.ops;
+    }
+
+    /**
+     * Returns the number of calls to onCommand() which threw an exception.
+     *
+     * @return long
+     */
+    public long getErrors() {
+        return this.errors;
+    }
+
+    public double getThroughput() {
+        return (this.elapsedNanos == 0) ? 0 :
+                this.ops * 1.0e9D / this.elapsedNanos;
+    }
+
+    /**
+     * Returns the bytes allocated by the calling threads per call, or -1 if
+     * the JVM does not measure allocation per thread. Work done on other
+     * threads, such as asynchronous Commands, is not included.
+     *
+     * @return long
+     */
+    public long getBytesPerOperation() {
+        if (this.allocatedBytes < 0 || this.ops == 0) return -1;
+        return this.allocatedBytes / this.ops;
+    }
+
+    public double getMessagesPerOperation() {
+        return (this.ops == 0) ? 0 : (double) this.messages / this.ops;
+    }
+
+    public Line getTotal() {
+        return this.total;
+    }
+
+    /**
+     * Returns the results of each command template, in the order added.
+     *
+     * @return List<Line>
+     */
+    public List<Line> getLines() {
+        return this.lines;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append(String.format("%d calls, %d errors, %.0f calls/s, ",
+                this.ops, this.errors, this.getThroughput()));
+        sb.append((this.getBytesPerOperation() < 0) ? "n/a" :
+                String.valueOf(this.getBytesPerOperation()));
+        sb.append(String.format(" B/call, %.2f messages/call%n",
+                this.getMessagesPerOperation()));
+
+        sb.append(String.format("%-32s %10s %9s %9s %9s %9s %9s%n",
+                "command", "calls", "p50 us", "p90 us", "p99 us", "p99.9 us",
+                "max us"));
+
+        for (Line line : this.lines) {
+            sb.append(line).append(String.format("%n"));
+        }
+
+        sb.append(this.total);
+
+        return sb.toString();
+    }
+
+    /**
+     * The latency distribution of one command template, or of all of them.
+     */
+    public static final class Line {
+
+        private final String name;
+        private final long ops;
+        private final long p50;
+        private final long p90;
+        private final long p99;
+        private final long p999;
+        private final long max;
+
+        Line(String name, LatencyHistogram histogram) {
+            this.name = name;
+            this.ops = histogram.getCount();
+            this.p50 = histogram.getPercentile(50);
+            this.p90 = histogram.getPercentile(90);
+            this.p99 = histogram.getPercentile(99);
+            this.p999 = histogram.getPercentile(99.9D);
+            this.max = histogram.getMax();
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public long getOperations() {
+            return this.ops;
+        }
+
+        public long getPercentile50() {
+            return this.p50;
+        }
+
+        public long getPercentile90() {
+            return this.p90;
+        }
+
+        public long getPercentile99() {
+            return this.p99;
+        }
+
+        public long getPercentile999() {
+            return this.p999;
+        }
+
+        public long getMax() {
+            return this.max;
+        }
+
+        @Override
+        public String toString() {
+            String label = (this.name.length() > 32) ?
+                    this.name.substring(0, 29) + "..." : this.name;
+
+            return String.format("%-32s %10d %9.1f %9.1f %9.1f %9.1f %9.1f",
+                    label, this.ops, this.p50 / 1e3D, this.p90 / 1e3D,
+                    this.p99 / 1e3D, this.p999 / 1e3D, this.max / 1e3D);
+        }
+    }
+}
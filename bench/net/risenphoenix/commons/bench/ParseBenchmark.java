@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.bench;
+
+import net.risenphoenix.commons.commands.ArgumentView;
+import net.risenphoenix.commons.commands.CommandManager;
+import net.risenphoenix.commons.commands.CommandType;
+import net.risenphoenix.commons.commands.ParseResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures CommandManager.parseCommand() alone, for each CommandType, across
+ * registry sizes, for inputs which call a Command (<i>hit</i>), call no
+ * Command (<i>miss</i>) and call a Command with too few arguments
+ * (<i>argError</i>). STATIC Commands only match input of their own length,
+ * so an <i>argError</i> input is reported as a miss for them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int size;
+
+    @Param({"STATIC", "VARIABLE", "DYNAMIC"})
+    public CommandType type;
+
+    @Param({"hit", "miss", "argError"})
+    public String input;
+
+    private CommandManager manager;
+    private String[] args;
+    private ArgumentView view;
+
+    @Setup
+    public void setUp() {
+        this.manager = BenchSupport.newPlugin().getCommandManager();
+        BenchSupport.register(this.manager.getPlugin(), this.type, this.size);
+
+        this.args = BenchSupport.input(this.type, this.size, this.input);
+        this.view = ArgumentView.of(this.args);
+    }
+
+    @Benchmark
+    public ParseResult parseArray() {
+        return this.manager.parseCommand(this.args);
+    }
+
+    @Benchmark
+    public ParseResult parseView() {
+        return this.manager.parseCommand(this.view);
+    }
+}
@@ -0,0 +1,436 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.bench;
+
+import net.risenphoenix.commons.Plugin;
+import net.risenphoenix.commons.commands.CommandManager;
+import net.risenphoenix.commons.localization.LocalizationManager;
+import net.risenphoenix.commons.tasks.TaskRunner;
+import net.risenphoenix.commons.util.PermissionCache;
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+import org.bukkit.permissions.Permission;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * A stand-in for a Bukkit Server, sufficient to enable a Plugin and drive
+ * its commands in a plain JVM.</br>
+ * <p/>
+ * </br>The Server, its scheduler and plugin manager, and the Players it
+ * creates are dynamic proxies: methods the library does not use return
+ * null, zero or false. Synchronous tasks run on a single "main" thread which
+ * ticks 20 times per second; asynchronous tasks run on a thread pool.
+ * Threads registered with {@link #addPrimaryThread(Thread)} are reported as
+ * the main thread, as the thread Bukkit dispatches commands on would be.
+ */
+public class StandInServer {
+
+    private static final long TICK_MILLIS = 50L;
+
+    private final Server server;
+    private final BukkitScheduler scheduler;
+    private final PluginManager pluginManager;
+    private final Logger logger = Logger.getLogger("StandInServer");
+
+    private final ScheduledExecutorService main;
+    private final ExecutorService async;
+    private final Set<Thread> primaryThreads = Collections.newSetFromMap(
+            new ConcurrentHashMap<Thread, Boolean>());
+
+    private final Map<Integer, Future<?>> tasks =
+            new ConcurrentHashMap<Integer, Future<?>>();
+    private final AtomicInteger nextTaskId = new AtomicInteger(1);
+
+    private final Map<String, Player> players =
+            new ConcurrentHashMap<String, Player>();
+    private final AtomicLong messages = new AtomicLong(0);
+
+    public StandInServer() {
+        this.main = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "StandIn-Main");
+                        thread.setDaemon(true);
+                        primaryThreads.add(thread);
+                        return thread;
+                    }
+                });
+        this.async = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "StandIn-Async-" +
+                        this.count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        this.scheduler = proxy(BukkitScheduler.class, new SchedulerHandler());
+        this.pluginManager = proxy(PluginManager.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                return defaultValue(method.getReturnType());
+            }
+        });
+        this.server = proxy(Server.class, new ServerHandler());
+    }
+
+    public final Server getServer() {
+        return this.server;
+    }
+
+    /**
+     * Installs this stand-in as the Server returned by Bukkit.getServer().
+     * Bukkit accepts a single Server per JVM; later calls have no effect.
+     */
+    public final void install() {
+        if (Bukkit.getServer() == null) Bukkit.setServer(this.server);
+    }
+
+    /**
+     * Reports the thread passed as the server main thread.
+     *
+     * @param thread
+     */
+    public final void addPrimaryThread(Thread thread) {
+        this.primaryThreads.add(thread);
+    }
+
+    public final void removePrimaryThread(Thread thread) {
+        this.primaryThreads.remove(thread);
+    }
+
+    /**
+     * Initializes the Plugin passed as Plugin.onEnable() would, without a
+     * plugin description or configuration file, then calls its onStartup()
+     * method so that it registers its Commands.
+     *
+     * @param plugin
+     * @param dataFolder
+     */
+    public final void enable(Plugin plugin, File dataFolder) {
+        this.install();
+
+        // JavaPlugin's own fields, where this version of Bukkit has them
+        BenchSupport.inject(plugin, "server", this.server, false);
+        BenchSupport.inject(plugin, "dataFolder", dataFolder, false);
+        BenchSupport.inject(plugin, "isEnabled", Boolean.TRUE, false);
+
+        BenchSupport.inject(plugin, "pluginName", "[" +
+                plugin.getClass().getSimpleName() + "] ", true);
+        BenchSupport.inject(plugin, "LM",
+                new LocalizationManager(plugin, "en"), true);
+        BenchSupport.inject(plugin, "PC", new PermissionCache(plugin),
+                true);
+        BenchSupport.inject(plugin, "CM", new CommandManager(plugin), true);
+        BenchSupport.inject(plugin, "TR", new TaskRunner(plugin), true);
+
+        plugin.onStartup();
+    }
+
+    /**
+     * Disables the Plugin passed, as the server would on shutdown.
+     *
+     * @param plugin
+     */
+    public final void disable(Plugin plugin) {
+        try {
+            plugin.onDisable();
+        } catch (UnsupportedOperationException e) {
+            // The Plugin does not implement onShutdown(); the library has
+            // shut down regardless
+        }
+    }
+
+    /**
+     * Returns a Player named as passed, holding the permissions named, who
+     * is online for as long as this server runs. Messages sent to the Player
+     * are counted, and otherwise discarded.
+     *
+     * @param name
+     * @param op
+     * @param permissions
+     * @return Player
+     */
+    public final Player createPlayer(String name, boolean op,
+                                     Collection<String> permissions) {
+        Player player = proxy(Player.class, new PlayerHandler(name,
+                UUID.nameUUIDFromBytes(name.getBytes()), op, permissions));
+        this.players.put(name.toLowerCase(), player);
+
+        return player;
+    }
+
+    /**
+     * Returns the number of messages sent to Players created by this server.
+     *
+     * @return long
+     */
+    public final long getMessageCount() {
+        return this.messages.get();
+    }
+
+    /**
+     * Stops the main thread and the asynchronous thread pool.
+     */
+    public final void shutdown() {
+        this.main.shutdownNow();
+        this.async.shutdownNow();
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) return Boolean.FALSE;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        if (type == double.class) return 0.0D;
+        if (type == float.class) return 0.0F;
+        if (type == short.class) return (short) 0;
+        if (type == byte.class) return (byte) 0;
+        if (type == char.class) return (char) 0;
+
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(),
+                new Class<?>[]{type}, handler);
+    }
+
+    private final class ServerHandler implements InvocationHandler {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+
+            if (name.equals("getScheduler")) return scheduler;
+            if (name.equals("getPluginManager")) return pluginManager;
+            if (name.equals("getLogger")) return logger;
+            if (name.equals("isPrimaryThread")) {
+                return primaryThreads.contains(Thread.currentThread());
+            }
+            if (name.equals("getOnlinePlayers")) {
+                List<Player> online = new ArrayList<Player>(players.values());
+                return method.getReturnType().isArray() ?
+                        online.toArray(new Player[online.size()]) : online;
+            }
+            if (name.equals("getPlayerExact") || name.equals("getPlayer")) {
+                if (args[0] instanceof String) {
+                    return players.get(((String) args[0]).toLowerCase());
+                }
+
+                for (Player player : players.values()) {
+                    if (player.getUniqueId().equals(args[0])) return player;
+                }
+
+                return null;
+            }
+            if (name.equals("getName")) return "StandInServer";
+            if (name.equals("getVersion") || name.equals("getBukkitVersion")) {
+                return "stand-in";
+            }
+
+            return defaultValue(method.getReturnType());
+        }
+    }
+
+    private final class SchedulerHandler implements InvocationHandler {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args)
+                throws Exception {
+            String name = method.getName();
+
+            if (name.startsWith("runTask") || name.startsWith("schedule")) {
+                Runnable task = null;
+                List<Long> times = new ArrayList<Long>(2);
+
+                for (Object arg : args) {
+                    if (arg instanceof Runnable) task = (Runnable) arg;
+                    if (arg instanceof Long) times.add((Long) arg);
+                }
+
+                boolean sync = !name.contains("Async");
+                long delay = times.isEmpty() ? 0 : times.get(0);
+                long period = (times.size() < 2) ? -1 : times.get(1);
+                int id = schedule(task, sync, delay, period);
+
+                return (method.getReturnType() == int.class) ? id :
+                        newTask(id, sync);
+            }
+            if (name.equals("callSyncMethod")) {
+                return main.submit((Callable<?>) args[1]);
+            }
+            if (name.equals("cancelTask")) {
+                cancel((Integer) args[0]);
+                return null;
+            }
+            if (name.equals("cancelTasks") || name.equals("cancelAllTasks")) {
+                for (Integer id : tasks.keySet()) cancel(id);
+                return null;
+            }
+            if (name.equals("isQueued") || name.equals("isCurrentlyRunning")) {
+                Future<?> future = tasks.get(args[0]);
+                return future != null && !future.isDone();
+            }
+
+            return defaultValue(method.getReturnType());
+        }
+
+        private int schedule(final Runnable task, boolean sync, long delay,
+                             long period) {
+            final int id = nextTaskId.getAndIncrement();
+            long delayMillis = Math.max(0, delay) * TICK_MILLIS;
+            Future<?> future;
+
+            if (!sync && period < 0 && delay <= 0) {
+                future = async.submit(task);
+            } else if (period < 0) {
+                future = main.schedule(task, delayMillis,
+                        TimeUnit.MILLISECONDS);
+            } else {
+                // Asynchronous repeating tasks also run on the main thread
+                future = main.scheduleAtFixedRate(task, delayMillis,
+                        Math.max(1, period) * TICK_MILLIS,
+                        TimeUnit.MILLISECONDS);
+            }
+
+            if (!(future instanceof ScheduledFuture) || period >= 0) {
+                tasks.put(id, future);
+            }
+
+            return id;
+        }
+
+        private void cancel(int id) {
+            Future<?> future = tasks.remove(id);
+            if (future != null) future.cancel(false);
+        }
+
+        private BukkitTask newTask(final int id, final boolean sync) {
+            return proxy(BukkitTask.class, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method,
+                                     Object[] args) {
+                    String name = method.getName();
+
+                    if (name.equals("getTaskId")) return id;
+                    if (name.equals("isSync")) return sync;
+                    if (name.equals("cancel")) {
+                        cancel(id);
+                        return null;
+                    }
+
+                    return defaultValue(method.getReturnType());
+                }
+            });
+        }
+    }
+
+    private final class PlayerHandler implements InvocationHandler {
+        private final String name;
+        private final UUID id;
+        private final boolean op;
+        private final Set<String> permissions;
+
+        private PlayerHandler(String name, UUID id, boolean op,
+                              Collection<String> permissions) {
+            this.name = name;
+            this.id = id;
+            this.op = op;
+            this.permissions = Collections.newSetFromMap(
+                    new ConcurrentHashMap<String, Boolean>());
+
+            for (String perm : permissions) {
+                this.permissions.add(perm.toLowerCase());
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+
+            if (name.equals("sendMessage") || name.equals("sendRawMessage")) {
+                messages.incrementAndGet();
+                return null;
+            }
+            if (name.equals("hasPermission") ||
+                    name.equals("isPermissionSet")) {
+                String perm = (args[0] instanceof Permission) ?
+                        ((Permission) args[0]).getName() : (String) args[0];
+                return this.op || this.permissions.contains(
+                        perm.toLowerCase());
+            }
+            if (name.equals("isOp")) return this.op;
+            if (name.equals("isOnline")) return Boolean.TRUE;
+            if (name.equals("getName") || name.equals("getDisplayName") ||
+                    name.equals("getPlayerListName")) {
+                return this.name;
+            }
+            if (name.equals("getUniqueId")) return this.id;
+            if (name.equals("getServer")) return server;
+            if (name.equals("hashCode")) return this.id.hashCode();
+            if (name.equals("equals")) return proxy == args[0];
+            if (name.equals("toString")) return "Player{" + this.name + "}";
+
+            return defaultValue(method.getReturnType());
+        }
+    }
+}
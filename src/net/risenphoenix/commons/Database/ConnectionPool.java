@@ -0,0 +1,562 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.database;
+
+import net.risenphoenix.commons.Plugin;
+import net.risenphoenix.commons.util.LatencyHistogram;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * A small pool of JDBC connections, each lent to one borrower at a time.</br>
+ * <p/>
+ * </br>Borrowing and returning a connection take no locks: each connection
+ * is claimed with a compare-and-set, trying first the connection the
+ * borrowing thread returned last, which is usually idle. A borrower only
+ * waits when every connection is in use and the pool is full, and gives up
+ * with an SQLException after the borrow timeout (30 seconds by default).
+ * </br>
+ * <p/>
+ * </br>A connection idle for more than half a second is validated before it
+ * is lent, and a connection older than its maximum lifetime (30 minutes by
+ * default) is closed and replaced, so that server-side timeouts are never
+ * met. When a leak detection threshold is set, the pool records where each
+ * connection was borrowed, and reports a connection held for longer than
+ * the threshold along with that stack trace.</br>
+ * <p/>
+ * </br>Each connection keeps its own {@link StatementCache}.
+ */
+public class ConnectionPool {
+
+    private static final int IDLE = 0;
+    private static final int IN_USE = 1;
+    private static final int REMOVED = -1;
+
+    private static final long VALIDATION_BYPASS =
+            TimeUnit.MILLISECONDS.toNanos(500);
+    private static final int VALIDATION_TIMEOUT = 5; // Seconds
+    private static final long HOUSEKEEPING_INTERVAL = 5000L;
+    private static final int STATEMENT_CACHE_SIZE = 64;
+
+    private final Plugin plugin;
+    private final String url;
+    private final String username;
+    private final String password;
+    private final int maxSize;
+
+    private final List<Entry> entries = new CopyOnWriteArrayList<Entry>();
+    private final ConcurrentMap<Connection, Entry> byConnection =
+            new ConcurrentHashMap<Connection, Entry>();
+    private final ThreadLocal<Entry> affinity = new ThreadLocal<Entry>();
+    private final AtomicInteger total = new AtomicInteger(0);
+    private final AtomicInteger waiters = new AtomicInteger(0);
+    private final Object signal = new Object();
+
+    private final LatencyHistogram borrowWait = new LatencyHistogram();
+    private final AtomicLong created = new AtomicLong(0);
+    private final AtomicLong retired = new AtomicLong(0);
+    private final AtomicLong leaks = new AtomicLong(0);
+    private final AtomicLong timeouts = new AtomicLong(0);
+
+    private volatile long borrowTimeout = TimeUnit.SECONDS.toNanos(30);
+    private volatile long maxLifetime = TimeUnit.MINUTES.toNanos(30);
+    private volatile long leakThreshold = 0;
+    private volatile boolean closed = false;
+    private volatile String[] initStatements = new String[0];
+
+    private final ScheduledExecutorService housekeeper;
+
+    /**
+     * Creates a pool of at most <i>maxSize</i> connections to the JDBC URL
+     * passed. Connections are opened as they are needed. The driver must
+     * already be loaded.
+     *
+     * @param plugin
+     * @param url
+     * @param username may be null if the URL holds the credentials
+     * @param password
+     * @param maxSize
+     */
+    public ConnectionPool(final Plugin plugin, String url, String username,
+                          String password, int maxSize) {
+        this.plugin = plugin;
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.maxSize = Math.max(1, maxSize);
+
+        final String name = plugin.getClass().getSimpleName() + "-DBPool";
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, name);
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+
+        this.housekeeper.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                houseKeep();
+            }
+        }, HOUSEKEEPING_INTERVAL, HOUSEKEEPING_INTERVAL,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Lends a connection, which must be handed back with release().
+     *
+     * @return Connection
+     * @throws SQLException if the pool is closed, no connection became free
+     * within the borrow timeout, or a new connection could not be opened
+     */
+    public final Connection borrow() throws SQLException {
+        long start = System.nanoTime();
+
+        try {
+            Entry entry = this.acquire(start + this.borrowTimeout);
+
+            entry.borrowedAt = System.nanoTime();
+            entry.borrower = Thread.currentThread();
+            entry.leakReported = false;
+            entry.borrowStack = (this.leakThreshold > 0) ?
+                    new Throwable("Connection borrowed here") : null;
+
+            return entry.connection;
+        } finally {
+            this.borrowWait.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Hands back a connection lent by borrow().
+     *
+     * @param c
+     * @return false if this pool did not lend the connection passed
+     */
+    public final boolean release(Connection c) {
+        Entry entry = (c == null) ? null : this.byConnection.get(c);
+        if (entry == null) return false;
+        if (entry.state.get() != IN_USE) return true;
+
+        entry.borrower = null;
+        entry.borrowStack = null;
+
+        if (this.closed ||
+                System.nanoTime() - entry.createdAt > this.maxLifetime) {
+            this.retire(entry);
+            return true;
+        }
+
+        entry.lastReturned = System.nanoTime();
+        entry.state.set(IDLE);
+        this.affinity.set(entry);
+
+        if (this.waiters.get() > 0) this.wake();
+        return true;
+    }
+
+    /**
+     * Returns the statement cache of a connection lent by borrow(), or null
+     * if this pool did not lend it.
+     *
+     * @param c
+     * @return StatementCache
+     */
+    public final StatementCache getStatementCache(Connection c) {
+        Entry entry = this.byConnection.get(c);
+        return (entry == null) ? null : entry.statements;
+    }
+
+    /**
+     * Closes every idle connection, and every lent connection as it is
+     * handed back. Waiting borrowers fail.
+     */
+    public final void close() {
+        this.closed = true;
+        this.housekeeper.shutdownNow();
+
+        for (Entry entry : this.entries) {
+            if (entry.state.compareAndSet(IDLE, IN_USE)) this.retire(entry);
+        }
+
+        this.wake();
+    }
+
+    public final boolean isClosed() {
+        return this.closed;
+    }
+
+    public final int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * Returns the number of open connections, lent or idle.
+     *
+     * @return int
+     */
+    public final int getTotal() {
+        return this.entries.size();
+    }
+
+    public final int getActive() {
+        int active = 0;
+
+        for (Entry entry : this.entries) {
+            if (entry.state.get() == IN_USE) active++;
+        }
+
+        return active;
+    }
+
+    public final int getIdle() {
+        int idle = 0;
+
+        for (Entry entry : this.entries) {
+            if (entry.state.get() == IDLE) idle++;
+        }
+
+        return idle;
+    }
+
+    /**
+     * Returns the number of borrowers currently waiting for a connection.
+     *
+     * @return int
+     */
+    public final int getWaiting() {
+        return this.waiters.get();
+    }
+
+    /**
+     * Returns the time each call to borrow() took, in nanoseconds.
+     *
+     * @return LatencyHistogram
+     */
+    public final LatencyHistogram getBorrowWait() {
+        return this.borrowWait;
+    }
+
+    public final long getCreated() {
+        return this.created.get();
+    }
+
+    /**
+     * Returns the number of connections closed for failing validation,
+     * exceeding their lifetime, or by close().
+     *
+     * @return long
+     */
+    public final long getRetired() {
+        return this.retired.get();
+    }
+
+    public final long getLeaks() {
+        return this.leaks.get();
+    }
+
+    public final long getTimeouts() {
+        return this.timeouts.get();
+    }
+
+    public final void setBorrowTimeout(long time, TimeUnit unit) {
+        this.borrowTimeout = Math.max(0, unit.toNanos(time));
+    }
+
+    public final void setMaxLifetime(long time, TimeUnit unit) {
+        this.maxLifetime = Math.max(1, unit.toNanos(time));
+    }
+
+    /**
+     * Sets how long a connection may be held before it is reported as
+     * leaked, or 0 to disable leak detection. Recording where connections
+     * are borrowed costs a stack trace per borrow.
+     *
+     * @param time
+     * @param unit
+     */
+    public final void setLeakDetectionThreshold(long time, TimeUnit unit) {
+        this.leakThreshold = Math.max(0, unit.toNanos(time));
+    }
+
+    /**
+     * Sets SQL, such as PRAGMA or SET statements, to run on each connection
+     * the pool opens from now on, before it is first lent.
+     *
+     * @param sql
+     */
+    public final void setInitStatements(String... sql) {
+        this.initStatements = sql.clone();
+    }
+
+    private Entry acquire(long deadline) throws SQLException {
+        while (true) {
+            if (this.closed) {
+                throw new SQLException(this.plugin.getLocalizationManager()
+                        .getLocalString("DB_POOL_CLOSED"));
+            }
+
+            // The connection this thread used last is likely to be idle
+            Entry entry = this.affinity.get();
+            if (entry != null && this.tryClaim(entry)) return entry;
+
+            entry = this.claimAny();
+            if (entry != null) return entry;
+
+            entry = this.tryCreate();
+            if (entry != null) return entry;
+
+            long remaining = deadline - System.nanoTime();
+
+            if (remaining <= 0) {
+                this.timeouts.incrementAndGet();
+                throw new SQLException(this.plugin.getLocalizationManager()
+                        .getLocalString("DB_POOL_TIMEOUT") +
+                        TimeUnit.NANOSECONDS.toMillis(this.borrowTimeout) +
+                        "ms");
+            }
+
+            // Registered before the last look, so that a connection handed
+            // back after it is certain to wake this thread
+            this.waiters.incrementAndGet();
+
+            try {
+                synchronized (this.signal) {
+                    entry = this.claimAny();
+                    if (entry != null) return entry;
+                    if (this.total.get() < this.maxSize) continue;
+
+                    TimeUnit.NANOSECONDS.timedWait(this.signal, remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException(e);
+            } finally {
+                this.waiters.decrementAndGet();
+            }
+        }
+    }
+
+    private Entry claimAny() {
+        for (Entry entry : this.entries) {
+            if (this.tryClaim(entry)) return entry;
+        }
+
+        return null;
+    }
+
+    // Claims the idle connection passed, if it is still fit for use
+    private boolean tryClaim(Entry entry) {
+        if (!entry.state.compareAndSet(IDLE, IN_USE)) return false;
+
+        long now = System.nanoTime();
+
+        if (now - entry.createdAt > this.maxLifetime ||
+                (now - entry.lastReturned > VALIDATION_BYPASS &&
+                        !isValid(entry.connection))) {
+            this.retire(entry);
+            return false;
+        }
+
+        return true;
+    }
+
+    // Opens a new connection if the pool is not full
+    private Entry tryCreate() throws SQLException {
+        int size;
+
+        do {
+            size = this.total.get();
+            if (size >= this.maxSize) return null;
+        } while (!this.total.compareAndSet(size, size + 1));
+
+        Connection c;
+
+        try {
+            c = this.connect();
+        } catch (SQLException e) {
+            this.total.decrementAndGet();
+            throw e;
+        } catch (RuntimeException e) {
+            this.total.decrementAndGet();
+            throw e;
+        }
+
+        Entry entry = new Entry(c);
+        entry.state.set(IN_USE);
+
+        this.byConnection.put(c, entry);
+        this.entries.add(entry);
+        this.created.incrementAndGet();
+
+        return entry;
+    }
+
+    // Opens a connection and runs the initialization statements on it
+    private Connection connect() throws SQLException {
+        Connection c = (this.username == null) ?
+                DriverManager.getConnection(this.url) :
+                DriverManager.getConnection(this.url, this.username,
+                        this.password);
+
+        String[] init = this.initStatements;
+        if (init.length == 0) return c;
+
+        Statement stmt = null;
+
+        try {
+            stmt = c.createStatement();
+            for (String sql : init) stmt.execute(sql);
+        } catch (SQLException e) {
+            c.close();
+            throw e;
+        } finally {
+            if (stmt != null) stmt.close();
+        }
+
+        return c;
+    }
+
+    // Closes a connection claimed by the caller, freeing its place
+    private void retire(Entry entry) {
+        entry.state.set(REMOVED);
+        this.entries.remove(entry);
+        this.byConnection.remove(entry.connection);
+        this.total.decrementAndGet();
+        this.retired.incrementAndGet();
+
+        entry.statements.clear();
+
+        try {
+            entry.connection.close();
+        } catch (SQLException e) {
+            // The connection is discarded either way
+        }
+
+        if (this.waiters.get() > 0) this.wake();
+    }
+
+    private void wake() {
+        synchronized (this.signal) {
+            this.signal.notifyAll();
+        }
+    }
+
+    // Housekeeper thread: reports leaks and replaces expired connections
+    private void houseKeep() {
+        long now = System.nanoTime();
+        long threshold = this.leakThreshold;
+
+        for (Entry entry : this.entries) {
+            int state = entry.state.get();
+
+            if (state == IN_USE && threshold > 0 && !entry.leakReported &&
+                    now - entry.borrowedAt > threshold) {
+                Throwable stack = entry.borrowStack;
+                Thread borrower = entry.borrower;
+
+                long held = now - entry.borrowedAt;
+
+                // Handed back, or borrowed again, since the state was read
+                if (stack == null || borrower == null || held <= threshold) {
+                    continue;
+                }
+
+                entry.leakReported = true;
+                this.leaks.incrementAndGet();
+
+                this.plugin.sendConsoleMessage(Level.WARNING, this.plugin
+                        .getLocalizationManager()
+                        .getLocalString("DB_POOL_LEAK") + borrower.getName() +
+                        " (" + TimeUnit.NANOSECONDS.toMillis(held) + "ms)");
+                stack.printStackTrace();
+            } else if (state == IDLE &&
+                    now - entry.createdAt > this.maxLifetime &&
+                    entry.state.compareAndSet(IDLE, IN_USE)) {
+                this.retire(entry);
+            }
+        }
+    }
+
+    private static boolean isValid(Connection c) {
+        try {
+            return c.isValid(VALIDATION_TIMEOUT);
+        } catch (SQLException e) {
+            // Drivers without JDBC 4 validation
+            try {
+                return !c.isClosed();
+            } catch (SQLException ignored) {
+                return false;
+            }
+        } catch (AbstractMethodError e) {
+            try {
+                return !c.isClosed();
+            } catch (SQLException ignored) {
+                return false;
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final Connection connection;
+        private final StatementCache statements =
+                new StatementCache(STATEMENT_CACHE_SIZE);
+        private final long createdAt = System.nanoTime();
+        private final AtomicInteger state = new AtomicInteger(IDLE);
+
+        private volatile long lastReturned = System.nanoTime();
+        private volatile long borrowedAt;
+        private volatile Thread borrower;
+        private volatile Throwable borrowStack;
+        private volatile boolean leakReported;
+
+        private Entry(Connection connection) {
+            this.connection = connection;
+        }
+    }
+}
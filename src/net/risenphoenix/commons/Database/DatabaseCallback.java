@@ -0,0 +1,82 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.database;
+
+/**
+ * Receives the outcome of an asynchronous statement or query submitted to a
+ * {@link DatabaseManager}.</br>
+ * <p/>
+ * </br>By default the callback runs on the database thread which performed
+ * the work, and must not call into the Bukkit API. A callback constructed
+ * with <i>mainThread</i> set to true runs on the server main thread instead,
+ * on the tick after the work completes.</br>
+ * <p/>
+ * </br>Work refused when it is submitted, because too much is queued or the
+ * manager has shut down, never reaches a database thread: onFailure() is
+ * then called on the thread which submitted it, before the submitting
+ * method returns, unless <i>mainThread</i> is set. A callback constructed
+ * with <i>mainThread</i> set to true is not called at all if the plugin has
+ * been disabled by the time its outcome is delivered.
+ *
+ * @param <T> the type of the result
+ */
+public abstract class DatabaseCallback<T> {
+
+    private final boolean mainThread;
+
+    public DatabaseCallback() {
+        this(false);
+    }
+
+    public DatabaseCallback(boolean mainThread) {
+        this.mainThread = mainThread;
+    }
+
+    /**
+     * Called with the result of the statement or query: whether a statement
+     * succeeded, or the value returned by the query's QueryFilter.
+     *
+     * @param result
+     */
+    public abstract void onComplete(T result);
+
+    /**
+     * Called instead of onComplete() if the work failed or could not be
+     * queued. The failure has already been logged.
+     *
+     * @param cause
+     */
+    public void onFailure(Throwable cause) { }
+
+    public final boolean isMainThread() {
+        return this.mainThread;
+    }
+}
@@ -32,21 +32,54 @@ package net.risenphoenix.commons.database;
 
 import net.risenphoenix.commons.Plugin;
 
-import java.beans.PropertyVetoException;
 import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
-import com.mchange.v2.c3p0.*;
 
 public class DatabaseConnection {
 
+    // Run on the writer's connection; journal_mode=WAL persists in the file
+    private static final String[] WAL_WRITER_INIT = {
+            "PRAGMA journal_mode=WAL",
+            "PRAGMA synchronous=NORMAL",
+            "PRAGMA busy_timeout=5000",
+            "PRAGMA temp_store=MEMORY"
+    };
+
+    private static final String[] WAL_READER_INIT = {
+            "PRAGMA busy_timeout=5000",
+            "PRAGMA temp_store=MEMORY",
+            "PRAGMA query_only=1"
+    };
+
     private final Plugin plugin;
+
+    /**
+     * @deprecated The library borrows connections from a ConnectionPool
+     * with borrow() and no longer uses this field. For unpooled databases,
+     * getConnection() opens a connection here, outside the pool, the first
+     * time it is called, and returns it to plugins which use it directly.
+     */
+    @Deprecated
     public Connection c = null;
 
     private String driver;
     private String connectionString;
+    private String username = null;
+    private String password = null;
+    private int poolSize = 1;
 
-    private ComboPooledDataSource pooledDataSource = null;
+    private ConnectionPool pool = null;
+    private boolean closed = false;
+
+    // SQLite in WAL mode only
+    private boolean wal = false;
+    private SQLiteWriter writer = null;
 
     // SQLite Connection Initializer
     public DatabaseConnection(final Plugin plugin) {
@@ -56,7 +89,7 @@ public class DatabaseConnection {
         connectionString = "jdbc:sqlite:" +
                 new File(this.plugin.getDataFolder() + File.separator +
                         "store.db").getAbsolutePath();
-        this.openConnection();
+        this.startPool();
     }
 
     public DatabaseConnection(final Plugin plugin, final String dbName) {
@@ -66,18 +99,39 @@ public class DatabaseConnection {
         connectionString = "jdbc:sqlite:" +
                 new File(this.plugin.getDataFolder() + File.separator +
                         dbName + ".db").getAbsolutePath();
-        this.openConnection();
+        this.startPool();
+    }
+
+    /**
+     * Opens the SQLite database named in write-ahead logging mode. Queries
+     * run concurrently on up to <i>readers</i> read-only connections, while
+     * every write is made by a single {@link SQLiteWriter} thread, which
+     * commits concurrent writes together.</br>
+     * <p/>
+     * </br>Connections from getConnection() or borrow() are read-only in
+     * this mode; writes must go through the DatabaseManager or getWriter().
+     *
+     * @param plugin
+     * @param dbName
+     * @param readers
+     */
+    public DatabaseConnection(final Plugin plugin, final String dbName,
+                              int readers) {
+        this.plugin = plugin;
+
+        driver = "org.sqlite.JDBC";
+        connectionString = "jdbc:sqlite:" +
+                new File(this.plugin.getDataFolder() + File.separator +
+                        dbName + ".db").getAbsolutePath();
+        this.poolSize = Math.max(1, readers);
+        this.wal = true;
+        this.startPool();
     }
 
     // MySQL Connection Initializer
     public DatabaseConnection(final Plugin plugin, String hostname, int port,
                               String database, String username, String pwd) {
-        this.plugin = plugin;
-
-        driver = "com.mysql.jdbc.Driver";
-        connectionString = "jdbc:mysql://" + hostname + ":" + port + "/" +
-                database + "?user=" + username + "&password=" + pwd;
-        this.openConnection();
+        this(plugin, hostname, port, database, username, pwd, 1);
     }
 
     // MySQL (Pooled) Connection Initializer
@@ -89,34 +143,43 @@ public class DatabaseConnection {
         driver = "com.mysql.jdbc.Driver";
         connectionString = "jdbc:mysql://" + hostname + ":" + port + "/" +
                 database;
+        this.username = username;
+        this.password = pwd;
+        this.poolSize = Math.max(1, poolSize);
+        this.startPool();
+    }
 
-        pooledDataSource = new ComboPooledDataSource();
-
-        try {
-            pooledDataSource.setDriverClass(driver);
-        } catch (PropertyVetoException e) {
-            e.printStackTrace();
+    /**
+     * Opens a connection outside the pool into the deprecated field
+     * <i>c</i>. The library does not use it; see borrow(). Reopens the
+     * database if closeConnection() closed it.
+     *
+     * @return Connection
+     */
+    public Connection openConnection() {
+        synchronized (this) {
+            this.closed = false;
+            if (this.connect() == null) return null;
         }
 
-        pooledDataSource.setJdbcUrl(connectionString);
-        pooledDataSource.setUser(username);
-        pooledDataSource.setPassword(pwd);
-        pooledDataSource.setMaxPoolSize(poolSize);
-    }
-
+        // Output Message
+        this.plugin.sendConsoleMessage(Level.INFO,
+                this.plugin.getLocalizationManager().
+                        getLocalString("DB_OPEN_SUC"));
 
+        return this.c;
+    }
 
-    public Connection openConnection() {
+    // Opens the connection in the deprecated field c, or returns null
+    private synchronized Connection connect() {
         try {
             Class.forName(this.driver);
-            this.c = DriverManager.getConnection(this.connectionString);
+            this.c = (this.username == null) ?
+                    DriverManager.getConnection(this.connectionString) :
+                    DriverManager.getConnection(this.connectionString,
+                            this.username, this.password);
 
-            // Output Message
-            this.plugin.sendConsoleMessage(Level.INFO,
-                    this.plugin.getLocalizationManager().
-                            getLocalString("DB_OPEN_SUC"));
-
-            return c;
+            return this.c;
         } catch (SQLException e) {
             this.plugin.sendConsoleMessage(Level.SEVERE,
                     this.plugin.getLocalizationManager().
@@ -129,12 +192,29 @@ public class DatabaseConnection {
             e.printStackTrace();
         }
 
-        return this.c;
+        return null;
     }
 
     public void closeConnection() {
+        ConnectionPool closing;
+        SQLiteWriter closingWriter;
+        Connection legacy;
+
+        synchronized (this) {
+            closing = this.pool;
+            closingWriter = this.writer;
+            legacy = this.c;
+            this.pool = null;
+            this.writer = null;
+            this.c = null;
+            this.closed = true;
+        }
+
         try {
-            if (this.c != null) c.close();
+            // Queued writes are committed before the connections close
+            if (closingWriter != null) closingWriter.close();
+            if (closing != null) closing.close();
+            if (legacy != null) legacy.close();
             this.plugin.sendConsoleMessage(Level.INFO,
                     this.plugin.getLocalizationManager().
                             getLocalString("DB_CLOSE_SUC"));
@@ -143,32 +223,243 @@ public class DatabaseConnection {
                     this.plugin.getLocalizationManager().
                             getLocalString("DB_CLOSE_ERR") + e.getLocalizedMessage());
         }
-
-        this.c = null;
     }
 
+    /**
+     * Returns a connection to the database, as before pooling:</br>
+     * <p/>
+     * </br>Pooled connections, and those in write-ahead logging mode, are
+     * borrowed from the pool and handed back by closing them. Otherwise
+     * the connection in the deprecated field <i>c</i> is returned, shared
+     * by every caller, and must not be closed.</br>
+     * <p/>
+     * </br>That connection is opened the first time it is asked for, and
+     * is a second connection to the database beside the pool's, which the
+     * library uses. On SQLite the two contend for the lock on the file, so
+     * writes made through it may fail with SQLITE_BUSY while the library
+     * commits a batch. Use borrow() instead where possible.
+     *
+     * @return Connection, or null if no connection could be obtained, or
+     * the database was closed by closeConnection()
+     */
     public Connection getConnection() {
-        if (pooledDataSource != null) {
+        if (this.isPooled() || this.wal) return this.borrow();
+
+        synchronized (this) {
+            if (this.c == null && !this.closed) this.connect();
+            return this.c;
+        }
+    }
+
+    /**
+     * Borrows a connection from the pool. The connection is not shared with any other caller until it
+     * is handed back, by release() or by closing it.
+     *
+     * @return Connection, or null if no connection could be obtained, or
+     * the database was closed by closeConnection()
+     */
+    public Connection borrow() {
+        ConnectionPool pool = this.startPool();
+        if (pool == null) return null;
+
+        try {
+            return LentConnection.wrap(this, pool.borrow());
+        } catch (SQLException e) {
+            this.plugin.sendConsoleMessage(Level.SEVERE,
+                    this.plugin.getLocalizationManager().
+                            getLocalString("DB_CNCT_ERR") + e.getLocalizedMessage());
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns whether more than one connection may be open at once.
+     *
+     * @return boolean
+     */
+    public boolean isPooled() {
+        return this.poolSize > 1;
+    }
+
+    public int getPoolSize() {
+        return this.poolSize;
+    }
+
+    /**
+     * Returns whether the database is SQLite in write-ahead logging mode,
+     * in which writes are made through getWriter().
+     *
+     * @return boolean
+     */
+    public boolean isWriteAheadLogging() {
+        return this.wal;
+    }
+
+    /**
+     * Returns the thread making every write in write-ahead logging mode, or
+     * null in any other mode, if the database could not be opened, or if it
+     * was closed by closeConnection().
+     *
+     * @return SQLiteWriter
+     */
+    public SQLiteWriter getWriter() {
+        if (!this.wal) return null;
+        this.startPool();
+
+        synchronized (this) {
+            return this.writer;
+        }
+    }
+
+    /**
+     * Returns the pool connections are borrowed from, or null if it is
+     * closed or the database driver could not be loaded.
+     *
+     * @return ConnectionPool
+     */
+    public synchronized ConnectionPool getPool() {
+        return this.pool;
+    }
+
+    /**
+     * Hands back a connection obtained from borrow(). A connection lent by
+     * a pool which has since been closed is closed. Releasing a connection
+     * twice, or one which was closed, has no effect.
+     *
+     * @param c
+     */
+    public void release(Connection c) {
+        LentConnection lent = LentConnection.of(c);
+        if (lent != null) lent.close();
+    }
+
+    // Hands back the pool's own connection, once, for a LentConnection
+    private void giveBack(Connection c) {
+        ConnectionPool pool = this.getPool();
+        if (pool != null && pool.release(c)) return;
+
+        try {
+            c.close();
+        } catch (SQLException e) {
+            this.plugin.sendConsoleMessage(Level.SEVERE,
+                    e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Returns a statement prepared from the SQL passed on a Connection
+     * obtained from borrow(), reusing a statement cached by that
+     * connection where one is idle. The statement must be handed back with
+     * release().
+     *
+     * @param c
+     * @param sql
+     * @return PreparedStatement
+     * @throws SQLException
+     */
+    public PreparedStatement prepare(Connection c, String sql)
+            throws SQLException {
+        StatementCache cache = this.getStatementCache(c);
+
+        if (cache != null) {
+            PreparedStatement stmt = cache.take(sql);
+            if (stmt != null && !stmt.isClosed()) return stmt;
+        }
+
+        return c.prepareStatement(sql);
+    }
+
+    /**
+     * Hands back a statement obtained from prepare(), caching it for reuse
+     * on its connection, or closing it if the connection has left the pool.
+     *
+     * @param c
+     * @param sql
+     * @param stmt
+     */
+    public void release(Connection c, String sql, PreparedStatement stmt) {
+        if (stmt == null) return;
+
+        StatementCache cache = this.getStatementCache(c);
+
+        try {
+            if (cache != null && !stmt.isClosed()) {
+                stmt.clearParameters();
+                stmt.clearBatch();
+                cache.offer(sql, stmt);
+            } else {
+                stmt.close();
+            }
+        } catch (SQLException e) {
             try {
-                return pooledDataSource.getConnection();
-            } catch (SQLException e) {
-                e.printStackTrace();
+                stmt.close();
+            } catch (SQLException ignored) {
+                // The statement is discarded either way
             }
+        }
+    }
+
+    private StatementCache getStatementCache(Connection c) {
+        LentConnection lent = LentConnection.of(c);
+        if (lent == null || lent.released.get()) return null;
 
+        ConnectionPool pool = this.getPool();
+        return (pool == null) ? null : pool.getStatementCache(lent.target);
+    }
+
+    // Loads the driver and creates the pool, if not already open. A pool
+    // closed by closeConnection() stays closed, so that nothing is left
+    // open, nor the SQLite file locked, once the plugin is disabled
+    private synchronized ConnectionPool startPool() {
+        if (this.pool != null || this.closed) return this.pool;
+
+        try {
+            Class.forName(this.driver);
+        } catch (ClassNotFoundException e) {
+            this.plugin.sendConsoleMessage(Level.SEVERE,
+                    this.plugin.getLocalizationManager().
+                            getLocalString("BAD_DB_DRVR") + this.driver);
             return null;
         }
 
-        return this.c;
-    }
+        // The writer switches the database to WAL before any reader opens
+        if (this.wal) {
+            try {
+                this.writer = new SQLiteWriter(this.plugin,
+                        this.connectionString, WAL_WRITER_INIT);
+            } catch (SQLException e) {
+                this.plugin.sendConsoleMessage(Level.SEVERE,
+                        this.plugin.getLocalizationManager().
+                                getLocalString("DB_CNCT_ERR") + e.getLocalizedMessage());
+                return null;
+            }
+        }
 
-    public boolean isConnected() {
+        this.pool = new ConnectionPool(this.plugin, this.connectionString,
+                this.username, this.password, this.poolSize);
+        if (this.wal) this.pool.setInitStatements(WAL_READER_INIT);
+
+        // Connect now, so that a bad configuration is reported on startup
         try {
-            return (c == null || c.isClosed()) ? false : true;
+            this.pool.release(this.pool.borrow());
+
+            // Output Message
+            this.plugin.sendConsoleMessage(Level.INFO,
+                    this.plugin.getLocalizationManager().
+                            getLocalString("DB_OPEN_SUC"));
         } catch (SQLException e) {
             this.plugin.sendConsoleMessage(Level.SEVERE,
-                    e.getLocalizedMessage());
-            return false;
+                    this.plugin.getLocalizationManager().
+                            getLocalString("DB_CNCT_ERR") + e.getLocalizedMessage());
         }
+
+        return this.pool;
+    }
+
+    public boolean isConnected() {
+        ConnectionPool pool = this.getPool();
+        return pool != null && !pool.isClosed();
     }
 
     public Result query(final PreparedStatement stmt) {
@@ -177,7 +468,7 @@ public class DatabaseConnection {
 
     public Result query(final PreparedStatement stmt, boolean retry) {
         try {
-            if (!isConnected()) openConnection();
+            if (!isConnected()) startPool();
 
             if (stmt.execute())
                 return new Result(stmt, stmt.getResultSet());
@@ -211,6 +502,71 @@ public class DatabaseConnection {
         return null;
     }
 
+    // Proxy for a pooled connection, whose close() hands it back to the
+    // pool once instead of closing it, as a c3p0 connection did
+    private static final class LentConnection implements InvocationHandler {
+        private final DatabaseConnection owner;
+        private final Connection target;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private LentConnection(DatabaseConnection owner, Connection target) {
+            this.owner = owner;
+            this.target = target;
+        }
+
+        private static Connection wrap(DatabaseConnection owner,
+                                       Connection target) {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new LentConnection(owner, target));
+        }
+
+        private static LentConnection of(Connection c) {
+            if (c == null || !Proxy.isProxyClass(c.getClass())) return null;
+
+            InvocationHandler handler = Proxy.getInvocationHandler(c);
+            return (handler instanceof LentConnection) ?
+                    (LentConnection) handler : null;
+        }
+
+        private void close() {
+            if (this.released.compareAndSet(false, true)) {
+                this.owner.giveBack(this.target);
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args)
+                throws Throwable {
+            String name = method.getName();
+
+            if (name.equals("close")) {
+                this.close();
+                return null;
+            } else if (name.equals("isClosed")) {
+                return this.released.get() || this.target.isClosed();
+            } else if (name.equals("equals")) {
+                return proxy == args[0];
+            } else if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            } else if (name.equals("toString")) {
+                return "Pooled " + this.target;
+            }
+
+            // The connection may already be lent to another caller
+            if (this.released.get()) {
+                throw new SQLException("Connection has been handed back");
+            }
+
+            try {
+                return method.invoke(this.target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
     // Result Object
     public class Result {
         private ResultSet resultSet;
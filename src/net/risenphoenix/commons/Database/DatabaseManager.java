@@ -32,17 +32,33 @@ package net.risenphoenix.commons.database;
 
 import net.risenphoenix.commons.Plugin;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
 public class DatabaseManager {
 
+    // Asynchronous work which may wait for a database thread at once
+    private static final int ASYNC_QUEUE_CAPACITY = 1024;
+
     private final Plugin plugin;
-    private DatabaseConnection connection;
+    private volatile DatabaseConnection connection;
     private DatabaseType type;
-    private boolean debug = false;
+    private volatile boolean debug = false;
+
+    private ThreadPoolExecutor executor = null;
 
     /* Connection Properties */
 
@@ -56,6 +72,7 @@ public class DatabaseManager {
 
     // SQLite
     private String dbName = null;
+    private int readers = 0;
 
     // SQLite Constructor
     public DatabaseManager(final Plugin plugin) {
@@ -76,6 +93,30 @@ public class DatabaseManager {
         this.type = DatabaseType.SQLITE;
     }
 
+    /**
+     * SQLite Constructor for write-ahead logging mode: queries run on up to
+     * <i>readers</i> connections at once, and writes are committed in groups
+     * by a single writer thread.
+     *
+     * @param plugin
+     * @param dbName
+     * @param readers
+     * @see DatabaseConnection#DatabaseConnection(Plugin, String, int)
+     */
+    public DatabaseManager(final Plugin plugin, final String dbName,
+                           int readers) {
+        this.plugin = plugin;
+
+        // Value Assignment
+        this.dbName = dbName;
+        this.readers = Math.max(1, readers);
+
+        // Connection Creation
+        this.connection = new DatabaseConnection(plugin, dbName,
+                this.readers);
+        this.type = DatabaseType.SQLITE;
+    }
+
     // MySQL Constructor
     public DatabaseManager(final Plugin plugin, String hostname, int port,
                            String database, String username, String pwd,
@@ -112,15 +153,7 @@ public class DatabaseManager {
     // Statement Execute Master Method
     public final boolean executeStatement(StatementObject stmt) {
         try {
-            confirmConnection(); // Confirm connection has not timed out.
-            PreparedStatement statement =
-                    stmt.getStatement(this.connection.getConnection());
-
-            if (this.debug)
-            this.plugin.sendConsoleMessage(Level.INFO, statement.toString());
-
-            stmt.getStatement(this.connection.getConnection()).executeUpdate();
-            return true;
+            return this.update(stmt);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -130,32 +163,332 @@ public class DatabaseManager {
 
     // Query Execute Master Method
     public final Object executeQuery(StatementObject stmt, QueryFilter filter) {
-        ResultSet res = null;
-        Object obj = null;
-
         try {
-            confirmConnection(); // Confirm connection has not timed out.
-            res = stmt.getStatement(this.connection.getConnection())
-                    .executeQuery();
-            obj = filter.onExecute(res);
-            res.close();
+            return this.query(stmt, filter);
         } catch (SQLException e) {
             this.plugin.sendConsoleMessage(Level.SEVERE,
                     e.getMessage());
+        }
+
+        return null;
+    }
+
+    /**
+     * Executes the statements passed in a single transaction, sending each
+     * run of consecutive statements with the same SQL as one JDBC batch. If
+     * any statement fails, none take effect.
+     *
+     * @param stmts
+     * @return boolean
+     */
+    public final boolean executeBatch(List<StatementObject> stmts) {
+        if (stmts.isEmpty()) return true;
+
+        try {
+            return this.batch(stmts);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        return false;
+    }
+
+    /**
+     * Executes the statement passed on a database thread, so that the
+     * caller does not wait on the database.
+     *
+     * @param stmt
+     * @return Future<Boolean>
+     * @see #executeStatementAsync(StatementObject, DatabaseCallback)
+     */
+    public final Future<Boolean> executeStatementAsync(StatementObject stmt) {
+        return this.executeStatementAsync(stmt, null);
+    }
+
+    /**
+     * Executes the statement passed on a database thread, then passes
+     * whether it succeeded to the callback passed.</br>
+     * <p/>
+     * </br>The database threads number as many as the connections the
+     * manager may hold at once (one for SQLite, or the number of readers in
+     * write-ahead logging mode), and at most 1024 statements and queries
+     * may wait for them. Work submitted beyond that fails with a
+     * RejectedExecutionException rather than delaying the caller. A
+     * callback without <i>mainThread</i> set then receives the failure on
+     * the calling thread.
+     *
+     * @param stmt
+     * @param callback may be null
+     * @return Future<Boolean>
+     */
+    public final Future<Boolean> executeStatementAsync(
+            final StatementObject stmt, DatabaseCallback<Boolean> callback) {
+        return this.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                try {
+                    return update(stmt);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    throw e;
+                }
+            }
+        }, callback);
+    }
+
+    public final Future<Object> executeQueryAsync(StatementObject stmt,
+                                                  QueryFilter filter) {
+        return this.executeQueryAsync(stmt, filter, null);
+    }
+
+    /**
+     * Executes the query passed on a database thread, then passes the value
+     * returned by the QueryFilter to the callback passed. The QueryFilter
+     * also runs on the database thread.
+     *
+     * @param stmt
+     * @param filter
+     * @param callback may be null
+     * @return Future<Object>
+     * @see #executeStatementAsync(StatementObject, DatabaseCallback)
+     */
+    public final Future<Object> executeQueryAsync(final StatementObject stmt,
+                                                  final QueryFilter filter,
+                                                  DatabaseCallback<Object>
+                                                          callback) {
+        return this.submit(new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                try {
+                    return query(stmt, filter);
+                } catch (SQLException e) {
+                    plugin.sendConsoleMessage(Level.SEVERE, e.getMessage());
+                    throw e;
+                }
+            }
+        }, callback);
+    }
+
+    /**
+     * Stops accepting asynchronous work and waits briefly for queued work to
+     * complete. The connection to the database is left open.
+     */
+    public final void shutdown() {
+        ThreadPoolExecutor executor;
+
+        synchronized (this) {
+            executor = this.executor;
+        }
+
+        if (executor == null) return;
+
+        executor.shutdown();
+
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean update(StatementObject stmt) throws SQLException {
+        confirmConnection(); // Confirm connection has not timed out.
+        return this.update(this.connection, stmt);
+    }
+
+    private boolean update(DatabaseConnection connection,
+                           StatementObject stmt) throws SQLException {
+        SQLiteWriter writer = connection.getWriter();
+
+        if (writer != null) {
+            if (this.debug)
+            this.plugin.sendConsoleMessage(Level.INFO, stmt.getSQL());
+
+            return writer.execute(Collections.singletonList(stmt));
+        }
+
+        Connection c = connection.borrow();
+        PreparedStatement statement = null;
+
+        try {
+            statement = this.prepare(connection, c, stmt);
+
+            if (this.debug)
+            this.plugin.sendConsoleMessage(Level.INFO, statement.toString());
+
+            statement.executeUpdate();
+            return true;
+        } finally {
+            connection.release(c, stmt.getSQL(), statement);
+            connection.release(c);
+        }
+    }
+
+    private Object query(StatementObject stmt, QueryFilter filter)
+            throws SQLException {
+        confirmConnection(); // Confirm connection has not timed out.
+        return this.query(this.connection, stmt, filter);
+    }
+
+    private Object query(DatabaseConnection connection, StatementObject stmt,
+                         QueryFilter filter) throws SQLException {
+        Connection c = connection.borrow();
+        PreparedStatement statement = null;
+        ResultSet res = null;
+
+        try {
+            statement = this.prepare(connection, c, stmt);
+
+            if (this.debug)
+            this.plugin.sendConsoleMessage(Level.INFO, statement.toString());
+
+            res = statement.executeQuery();
+            return filter.onExecute(res);
         } finally {
             try {
                 if (res != null) res.close();
             } catch (Exception e) {
                 this.plugin.sendConsoleMessage(Level.SEVERE,
                         e.getMessage());
-                res = null;
             }
+
+            connection.release(c, stmt.getSQL(), statement);
+            connection.release(c);
+        }
+    }
+
+    private boolean batch(List<StatementObject> stmts) throws SQLException {
+        confirmConnection(); // Confirm connection has not timed out.
+        return this.batch(this.connection, stmts);
+    }
+
+    private boolean batch(DatabaseConnection connection,
+                          List<StatementObject> stmts) throws SQLException {
+        SQLiteWriter writer = connection.getWriter();
+        if (writer != null) return writer.execute(stmts);
+
+        Connection c = connection.borrow();
+
+        if (c == null) {
+            throw new SQLException(this.plugin.getLocalizationManager()
+                    .getLocalString("DB_CNCT_ERR"));
+        }
+
+        boolean autoCommit = c.getAutoCommit();
+
+        try {
+            c.setAutoCommit(false);
+
+            int i = 0;
+            while (i < stmts.size()) {
+                String sql = stmts.get(i).getSQL();
+                PreparedStatement statement = connection.prepare(c, sql);
+                int start = i;
+
+                try {
+                    // Each run of statements sharing SQL is one JDBC batch
+                    while (i < stmts.size() &&
+                            stmts.get(i).getSQL().equals(sql)) {
+                        stmts.get(i).bind(statement);
+                        statement.addBatch();
+                        i++;
+                    }
+
+                    if (this.debug)
+                    this.plugin.sendConsoleMessage(Level.INFO, sql + " x" +
+                            (i - start));
+
+                    statement.executeBatch();
+                } finally {
+                    connection.release(c, sql, statement);
+                }
+            }
+
+            c.commit();
+            return true;
+        } catch (SQLException e) {
+            try {
+                c.rollback();
+            } catch (SQLException ignored) {
+                // Reported through the original exception
+            }
+
+            throw e;
+        } finally {
+            try {
+                c.setAutoCommit(autoCommit);
+            } catch (SQLException e) {
+                this.plugin.sendConsoleMessage(Level.SEVERE,
+                        e.getMessage());
+            }
+
+            connection.release(c);
+        }
+    }
+
+    // Prepares the statement exactly once, from the cache where possible
+    private PreparedStatement prepare(DatabaseConnection connection,
+                                      Connection c, StatementObject stmt)
+            throws SQLException {
+        if (c == null) {
+            throw new SQLException(this.plugin.getLocalizationManager()
+                    .getLocalString("DB_CNCT_ERR"));
+        }
+
+        PreparedStatement statement = connection.prepare(c, stmt.getSQL());
+
+        try {
+            stmt.bind(statement);
+        } catch (SQLException e) {
+            this.plugin.sendConsoleMessage(Level.SEVERE, this.plugin
+                    .getLocalizationManager()
+                    .getLocalString("DB_PREP_STMT_ERR"));
+            connection.release(c, stmt.getSQL(), statement);
+            throw e;
+        }
+
+        return statement;
+    }
+
+    private <T> Future<T> submit(Callable<T> work,
+                                 DatabaseCallback<T> callback) {
+        DatabaseTask<T> task = new DatabaseTask<T>(this.plugin, work,
+                callback);
+
+        ThreadPoolExecutor executor = this.getExecutor();
+
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            this.plugin.sendConsoleMessage(Level.SEVERE, this.plugin
+                    .getLocalizationManager().getLocalString(
+                            executor.isShutdown() ? "DB_ASYNC_SHUTDOWN" :
+                                    "DB_ASYNC_FULL"));
+            task.fail(e);
         }
 
-        return obj;
+        return task;
     }
 
-    private void confirmConnection() {
+    // The executor is only created once asynchronous work is submitted
+    private synchronized ThreadPoolExecutor getExecutor() {
+        if (this.executor == null) {
+            int threads = this.connection.getPoolSize();
+
+            this.executor = new ThreadPoolExecutor(threads, threads, 60L,
+                    TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(
+                    ASYNC_QUEUE_CAPACITY), new WorkerFactory(this.plugin));
+            this.executor.allowCoreThreadTimeOut(true);
+            this.plugin.registerDatabaseManager(this);
+        }
+
+        return this.executor;
+    }
+
+    private synchronized void confirmConnection() {
         if (connection == null) {
             if (getDatabaseType().equals(DatabaseType.MYSQL)) {
                 connection = new DatabaseConnection(getPlugin(), hostname, port,
@@ -163,6 +496,9 @@ public class DatabaseManager {
             } else {
                 if (dbName == null) {
                     connection = new DatabaseConnection(getPlugin());
+                } else if (readers > 0) {
+                    connection = new DatabaseConnection(getPlugin(), dbName,
+                            readers);
                 } else {
                     connection = new DatabaseConnection(getPlugin(), dbName);
                 }
@@ -182,6 +518,23 @@ public class DatabaseManager {
         return this.type;
     }
 
+    private static final class WorkerFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+        private final String prefix;
+
+        private WorkerFactory(Plugin plugin) {
+            this.prefix = plugin.getClass().getSimpleName() + "-Database-";
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, this.prefix +
+                    this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
     public enum DatabaseType {
         MYSQL,
         SQLITE
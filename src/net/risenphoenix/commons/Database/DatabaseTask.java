@@ -0,0 +1,106 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.database;
+
+import net.risenphoenix.commons.Plugin;
+import org.bukkit.plugin.IllegalPluginAccessException;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * The Future returned for asynchronous database work, which delivers its
+ * outcome to an optional DatabaseCallback when done.
+ */
+final class DatabaseTask<T> extends FutureTask<T> {
+
+    private final Plugin plugin;
+    private final DatabaseCallback<T> callback;
+
+    DatabaseTask(Plugin plugin, Callable<T> work,
+                 DatabaseCallback<T> callback) {
+        super(work);
+        this.plugin = plugin;
+        this.callback = callback;
+    }
+
+    // Completes the task with the failure passed, without running it. The
+    // outcome is delivered on the calling thread, as done() runs there
+    void fail(Throwable cause) {
+        this.setException(cause);
+    }
+
+    @Override
+    protected void done() {
+        if (this.callback == null) return;
+
+        Runnable delivery = new Runnable() {
+            @Override
+            public void run() {
+                deliver();
+            }
+        };
+
+        if (this.callback.isMainThread()) {
+            try {
+                this.plugin.getServer().getScheduler().runTask(this.plugin,
+                        delivery);
+            } catch (IllegalPluginAccessException e) {
+                // The plugin has been disabled, so the outcome can no longer
+                // be delivered on the main thread; it is dropped
+            }
+        } else {
+            delivery.run();
+        }
+    }
+
+    private void deliver() {
+        T result;
+
+        try {
+            result = this.get();
+        } catch (ExecutionException e) {
+            this.callback.onFailure(e.getCause());
+            return;
+        } catch (CancellationException e) {
+            this.callback.onFailure(e);
+            return;
+        } catch (InterruptedException e) {
+            // Unreachable; the task is done
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        this.callback.onComplete(result);
+    }
+}
@@ -0,0 +1,425 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.database;
+
+import net.risenphoenix.commons.Plugin;
+import net.risenphoenix.commons.util.LatencyHistogram;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * The single thread through which every write to an SQLite database in WAL
+ * mode is made.</br>
+ * <p/>
+ * </br>SQLite allows one writer at a time; funnelling writes through one
+ * connection means they never wait on each other for the database lock, so
+ * SQLITE_BUSY is not raised by this process. Writes which arrive while the
+ * thread is busy are committed together, up to 1000 at a time, in a single
+ * transaction: concurrent writers share the cost of one commit (group
+ * commit). Each write runs under its own savepoint, so a failing write is
+ * rolled back alone and does not fail the others in its group.</br>
+ * <p/>
+ * </br>A write completes once its group is committed, so a query made after
+ * it completes sees it.
+ */
+public class SQLiteWriter {
+
+    private static final int MAX_GROUP = 1000;
+    private static final int STATEMENT_CACHE_SIZE = 64;
+
+    private static final Runnable NO_OP = new Runnable() {
+        @Override
+        public void run() { }
+    };
+
+    private final Plugin plugin;
+    private final String url;
+    private final String[] initStatements;
+
+    // Queued by close() to wake the writer thread without interrupting it
+    private final Write wake =
+            new Write(Collections.<StatementObject>emptyList());
+
+    private final BlockingQueue<Write> queue = new LinkedBlockingQueue<Write>();
+    private final AtomicLong writes = new AtomicLong(0);
+    private final AtomicLong commits = new AtomicLong(0);
+    private final LatencyHistogram commitLatency = new LatencyHistogram();
+
+    private volatile boolean running = true;
+    private final Thread writer;
+
+    // Writer thread only, once started
+    private Connection connection;
+    private Statement control;
+    private StatementCache statements;
+
+    /**
+     * Opens the writer's connection to the JDBC URL passed, runs the
+     * initialization statements on it, and starts the writer thread.
+     *
+     * @param plugin
+     * @param url
+     * @param initStatements
+     * @throws SQLException if the connection could not be opened
+     */
+    public SQLiteWriter(final Plugin plugin, String url,
+                        String... initStatements) throws SQLException {
+        this.plugin = plugin;
+        this.url = url;
+        this.initStatements = initStatements.clone();
+
+        this.open();
+
+        this.writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        }, plugin.getClass().getSimpleName() + "-SQLiteWriter");
+
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues the statements passed to be executed together, all or none,
+     * in the writer's next group.
+     *
+     * @param stmts
+     * @return Future<Boolean> completing when the group is committed
+     */
+    public final Future<Boolean> submit(List<StatementObject> stmts) {
+        Write write = new Write(new ArrayList<StatementObject>(stmts));
+
+        if (this.running) {
+            this.queue.add(write);
+
+            // Closed since the check above; once the writer thread has
+            // drained the queue for the last time, nothing completes it
+            if (this.running || !this.queue.remove(write)) return write;
+        }
+
+        write.fail(new SQLException(this.plugin.getLocalizationManager()
+                .getLocalString("DB_POOL_CLOSED")));
+        return write;
+    }
+
+    /**
+     * Executes the statements passed as submit() does, and waits for them
+     * to be committed.
+     *
+     * @param stmts
+     * @return true
+     * @throws SQLException if the statements failed and were rolled back
+     */
+    public final boolean execute(List<StatementObject> stmts)
+            throws SQLException {
+        try {
+            return this.submit(stmts).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+
+            throw new SQLException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(e);
+        }
+    }
+
+    /**
+     * Returns the number of writes waiting for the writer thread.
+     *
+     * @return int
+     */
+    public final int getDepth() {
+        return this.queue.size() - (this.queue.contains(this.wake) ? 1 : 0);
+    }
+
+    public final long getWrites() {
+        return this.writes.get();
+    }
+
+    /**
+     * Returns the number of transactions committed. Divided into
+     * getWrites(), gives the average size of a group.
+     *
+     * @return long
+     */
+    public final long getCommits() {
+        return this.commits.get();
+    }
+
+    /**
+     * Returns the time taken to execute and commit each group, in
+     * nanoseconds.
+     *
+     * @return LatencyHistogram
+     */
+    public final LatencyHistogram getCommitLatency() {
+        return this.commitLatency;
+    }
+
+    /**
+     * Stops accepting writes, waits for those already queued to be
+     * committed, and closes the writer's connection.
+     */
+    public final void close() {
+        this.running = false;
+        this.queue.offer(this.wake);
+
+        try {
+            this.writer.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Writer thread: commits the queued writes a group at a time
+    private void write() {
+        List<Write> group = new ArrayList<Write>();
+
+        try {
+            while (true) {
+                Write first;
+
+                try {
+                    first = (this.running) ?
+                            this.queue.poll(1, TimeUnit.SECONDS) :
+                            this.queue.poll();
+                } catch (InterruptedException e) {
+                    // close() wakes the thread through the queue instead
+                    continue;
+                }
+
+                if (first == null) {
+                    if (!this.running) break;
+                    continue;
+                }
+
+                group.add(first);
+                this.queue.drainTo(group, MAX_GROUP - 1);
+                group.remove(this.wake);
+
+                if (!group.isEmpty()) this.commit(group);
+                group.clear();
+            }
+        } finally {
+            // Also reached if the thread dies, so that no write waits on it
+            this.running = false;
+            this.disconnect();
+
+            Write late;
+            while ((late = this.queue.poll()) != null) {
+                late.fail(new SQLException(this.plugin
+                        .getLocalizationManager()
+                        .getLocalString("DB_POOL_CLOSED")));
+            }
+        }
+    }
+
+    private void commit(List<Write> group) {
+        long start = System.nanoTime();
+        List<Write> applied = new ArrayList<Write>(group.size());
+
+        try {
+            if (this.connection == null || this.connection.isClosed()) {
+                this.open();
+            }
+
+            this.connection.setAutoCommit(false);
+
+            for (Write write : group) {
+                try {
+                    this.apply(write);
+                    applied.add(write);
+                } catch (SQLException e) {
+                    this.plugin.sendConsoleMessage(Level.SEVERE,
+                            e.getMessage());
+                    write.fail(e);
+                }
+            }
+
+            this.connection.commit();
+            this.commits.incrementAndGet();
+            this.writes.addAndGet(applied.size());
+
+            for (Write write : applied) write.complete(Boolean.TRUE);
+        } catch (SQLException e) {
+            this.abort(group, e);
+        } catch (RuntimeException e) {
+            // Thrown by a driver or a bound value; fail the group, not the
+            // writer thread
+            this.abort(group, new SQLException(e));
+        } finally {
+            try {
+                if (this.connection != null) {
+                    this.connection.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                // Reopened before the next group if unusable
+                this.disconnect();
+            }
+
+            this.commitLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    // Rolls back the group, failing every write in it
+    private void abort(List<Write> group, SQLException e) {
+        this.plugin.sendConsoleMessage(Level.SEVERE, e.getMessage());
+
+        try {
+            if (this.connection != null) this.connection.rollback();
+        } catch (SQLException ignored) {
+            // Reported through the original exception
+        }
+
+        for (Write write : group) write.fail(e);
+    }
+
+    // Executes one write under its own savepoint
+    private void apply(Write write) throws SQLException {
+        this.control.execute("SAVEPOINT rp_write");
+
+        try {
+            List<StatementObject> stmts = write.stmts;
+            int i = 0;
+
+            while (i < stmts.size()) {
+                String sql = stmts.get(i).getSQL();
+                PreparedStatement statement = this.statements.take(sql);
+                if (statement == null) {
+                    statement = this.connection.prepareStatement(sql);
+                }
+
+                // Each run of statements sharing SQL is one JDBC batch
+                int end = i + 1;
+                while (end < stmts.size() &&
+                        stmts.get(end).getSQL().equals(sql)) {
+                    end++;
+                }
+
+                try {
+                    if (end - i == 1) {
+                        stmts.get(i).bind(statement);
+                        statement.executeUpdate();
+                    } else {
+                        for (int j = i; j < end; j++) {
+                            stmts.get(j).bind(statement);
+                            statement.addBatch();
+                        }
+
+                        statement.executeBatch();
+                    }
+                } finally {
+                    statement.clearParameters();
+                    statement.clearBatch();
+                    this.statements.offer(sql, statement);
+                }
+
+                i = end;
+            }
+
+            this.control.execute("RELEASE rp_write");
+        } catch (SQLException e) {
+            this.control.execute("ROLLBACK TO rp_write");
+            this.control.execute("RELEASE rp_write");
+            throw e;
+        }
+    }
+
+    private void open() throws SQLException {
+        this.disconnect();
+
+        Connection c = DriverManager.getConnection(this.url);
+
+        try {
+            Statement stmt = c.createStatement();
+            for (String sql : this.initStatements) stmt.execute(sql);
+
+            this.control = stmt;
+            this.connection = c;
+            this.statements = new StatementCache(STATEMENT_CACHE_SIZE);
+        } catch (SQLException e) {
+            c.close();
+            throw e;
+        }
+    }
+
+    private void disconnect() {
+        if (this.connection == null) return;
+
+        this.statements.clear();
+
+        try {
+            this.control.close();
+            this.connection.close();
+        } catch (SQLException e) {
+            // The connection is discarded either way
+        }
+
+        this.connection = null;
+    }
+
+    private static final class Write extends FutureTask<Boolean> {
+        private final List<StatementObject> stmts;
+
+        private Write(List<StatementObject> stmts) {
+            super(NO_OP, null);
+            this.stmts = stmts;
+        }
+
+        private void complete(Boolean result) {
+            this.set(result);
+        }
+
+        private void fail(Throwable cause) {
+            this.setException(cause);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.database;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Bounded cache of the idle PreparedStatements of a single Connection, keyed
+ * by their SQL text.</br>
+ * <p/>
+ * </br>A statement is taken out of the cache while it is in use and offered
+ * back afterwards, so that no two threads ever share one. When the cache is
+ * full, the least recently used statement is closed to make room.
+ */
+public class StatementCache {
+
+    private final int capacity;
+    private final LinkedHashMap<String, PreparedStatement> statements;
+
+    private long hits = 0;
+    private long misses = 0;
+
+    public StatementCache(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.statements = new LinkedHashMap<String, PreparedStatement>(16,
+                0.75F, true);
+    }
+
+    /**
+     * Removes and returns the idle statement cached for the SQL passed, or
+     * returns null if there is none.
+     *
+     * @param sql
+     * @return PreparedStatement
+     */
+    public final PreparedStatement take(String sql) {
+        synchronized (this) {
+            PreparedStatement stmt = this.statements.remove(sql);
+
+            if (stmt == null) {
+                this.misses++;
+            } else {
+                this.hits++;
+            }
+
+            return stmt;
+        }
+    }
+
+    /**
+     * Caches the statement passed, which must be idle and prepared from the
+     * SQL passed. A statement displaced by it is closed.
+     *
+     * @param sql
+     * @param stmt
+     */
+    public final void offer(String sql, PreparedStatement stmt) {
+        List<PreparedStatement> evicted = new ArrayList<PreparedStatement>(1);
+
+        synchronized (this) {
+            PreparedStatement previous = this.statements.put(sql, stmt);
+            if (previous != null && previous != stmt) evicted.add(previous);
+
+            Iterator<PreparedStatement> it =
+                    this.statements.values().iterator();
+            while (this.statements.size() > this.capacity) {
+                evicted.add(it.next());
+                it.remove();
+            }
+        }
+
+        // Close outside the lock; closing may involve the database
+        for (PreparedStatement old : evicted) close(old);
+    }
+
+    /**
+     * Closes and removes every cached statement.
+     */
+    public final void clear() {
+        List<PreparedStatement> closing;
+
+        synchronized (this) {
+            closing = new ArrayList<PreparedStatement>(
+                    this.statements.values());
+            this.statements.clear();
+        }
+
+        for (PreparedStatement stmt : closing) close(stmt);
+    }
+
+    public final synchronized int size() {
+        return this.statements.size();
+    }
+
+    public final int getCapacity() {
+        return this.capacity;
+    }
+
+    public final synchronized long getHits() {
+        return this.hits;
+    }
+
+    public final synchronized long getMisses() {
+        return this.misses;
+    }
+
+    private static void close(PreparedStatement stmt) {
+        try {
+            stmt.close();
+        } catch (SQLException e) {
+            // The statement is discarded either way
+        }
+    }
+}
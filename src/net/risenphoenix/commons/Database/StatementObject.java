@@ -34,6 +34,7 @@ import net.risenphoenix.commons.Plugin;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.logging.Level;
 
 public class StatementObject {
@@ -53,28 +54,17 @@ public class StatementObject {
         this.values = values;
     }
 
+    /**
+     * Prepares a new statement from this object's SQL on the Connection
+     * passed and binds its values. The caller must close the statement.
+     *
+     * @param c
+     * @return PreparedStatement
+     */
     public PreparedStatement getStatement(Connection c) {
         try {
             PreparedStatement prepStmt = c.prepareStatement(this.SQL);
-
-            if (this.values != null) {
-                for (int i = 1; i <= this.values.length; i++) {
-
-                    if (this.values[i-1] instanceof Integer) {
-                        prepStmt.setInt(i, (Integer) this.values[i-1]);
-                        continue;
-                    }
-
-                    if (this.values[i-1] instanceof String) {
-                        prepStmt.setString(i, this.values[i-1].toString());
-                        continue;
-                    }
-
-                    this.plugin.sendConsoleMessage(Level.SEVERE, this.plugin
-                            .getLocalizationManager()
-                            .getLocalString("BAD_SQL_INPUT"));
-                }
-            }
+            this.bind(prepStmt);
 
             return prepStmt;
         } catch (Exception e) {
@@ -86,4 +76,39 @@ public class StatementObject {
 
         return null;
     }
+
+    /**
+     * Binds this object's values to the statement passed, which must have
+     * been prepared from this object's SQL. Values bound earlier are
+     * cleared first, so that a cached statement may be reused.
+     *
+     * @param prepStmt
+     * @throws SQLException
+     */
+    public void bind(PreparedStatement prepStmt) throws SQLException {
+        prepStmt.clearParameters();
+
+        if (this.values == null) return;
+
+        for (int i = 1; i <= this.values.length; i++) {
+
+            if (this.values[i-1] instanceof Integer) {
+                prepStmt.setInt(i, (Integer) this.values[i-1]);
+                continue;
+            }
+
+            if (this.values[i-1] instanceof String) {
+                prepStmt.setString(i, this.values[i-1].toString());
+                continue;
+            }
+
+            this.plugin.sendConsoleMessage(Level.SEVERE, this.plugin
+                    .getLocalizationManager()
+                    .getLocalString("BAD_SQL_INPUT"));
+        }
+    }
+
+    public String getSQL() {
+        return this.SQL;
+    }
 }
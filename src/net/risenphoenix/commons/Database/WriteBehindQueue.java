@@ -0,0 +1,311 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.database;
+
+import net.risenphoenix.commons.Plugin;
+import net.risenphoenix.commons.util.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+
+/**
+ * Queues statements whose results the caller does not need, such as
+ * logging INSERTs and counter UPDATEs, and executes them in the background
+ * in batches.</br>
+ * <p/>
+ * </br>Queued statements are flushed once 500 are waiting, or one second
+ * after the last flush, whichever comes first. Each flush is one
+ * transaction, in which each run of consecutive statements with the same
+ * SQL is sent as one JDBC batch; statements are executed in the order they
+ * were queued. If a flush fails, its statements are retried one at a time
+ * so that a single bad statement does not discard the others.</br>
+ * <p/>
+ * </br>When its Plugin is disabled, a queue is flushed before onShutdown()
+ * is called, while the plugin's connections are still open, and closed
+ * after. Statements queued during onShutdown() are written only if the
+ * connection is still open when the queue closes.
+ */
+public class WriteBehindQueue {
+
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final long DEFAULT_FLUSH_INTERVAL = 1000L;
+    private static final int MAX_PENDING = 100000;
+    private static final int MAX_FLUSH = 5000;
+
+    private final DatabaseManager manager;
+    private final int batchSize;
+    private final long flushInterval;
+
+    private final Queue<StatementObject> queue =
+            new ConcurrentLinkedQueue<StatementObject>();
+    private final AtomicInteger pending = new AtomicInteger(0);
+    private final AtomicLong written = new AtomicLong(0);
+    private final AtomicLong failed = new AtomicLong(0);
+    private final AtomicLong rejected = new AtomicLong(0);
+    private final AtomicLong accepted = new AtomicLong(0);
+    private final Object executed = new Object();
+    private final LatencyHistogram flushLatency = new LatencyHistogram();
+
+    private volatile boolean running = true;
+    private volatile boolean flushRequested = false;
+    private final Thread flusher;
+
+    public WriteBehindQueue(final DatabaseManager manager) {
+        this(manager, DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL,
+                TimeUnit.MILLISECONDS);
+    }
+
+    public WriteBehindQueue(final DatabaseManager manager, int batchSize,
+                            long flushInterval, TimeUnit unit) {
+        this.manager = manager;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushInterval = Math.max(1, unit.toNanos(flushInterval));
+
+        Plugin plugin = manager.getPlugin();
+
+        this.flusher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, plugin.getClass().getSimpleName() + "-WriteBehind");
+
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+
+        plugin.registerWriteBehindQueue(this);
+    }
+
+    /**
+     * Queues the statement passed. Never blocks.
+     *
+     * @param stmt
+     * @return false if the queue is closed, or too far behind to accept it
+     */
+    public final boolean submit(StatementObject stmt) {
+        if (!this.running) {
+            this.rejected.incrementAndGet();
+            return false;
+        }
+
+        int depth = this.pending.incrementAndGet();
+
+        if (depth > MAX_PENDING) {
+            this.pending.decrementAndGet();
+            this.rejected.incrementAndGet();
+            return false;
+        }
+
+        this.queue.add(stmt);
+
+        // Closed since the check above; the flusher may already have
+        // drained the queue for the last time
+        if (!this.running && this.queue.remove(stmt)) {
+            this.pending.decrementAndGet();
+            this.rejected.incrementAndGet();
+            return false;
+        }
+
+        this.accepted.incrementAndGet();
+        if (depth == this.batchSize) LockSupport.unpark(this.flusher);
+
+        return true;
+    }
+
+    /**
+     * Asks for the queued statements to be flushed now, rather than at the
+     * next threshold. Does not wait for the flush.
+     */
+    public final void flush() {
+        this.flushRequested = true;
+        LockSupport.unpark(this.flusher);
+    }
+
+    /**
+     * Asks for the queued statements to be flushed now, and waits for every
+     * statement queued before this call to be executed.
+     *
+     * @param timeout
+     * @param unit
+     * @return false if they had not all been executed within the timeout
+     */
+    public final boolean flush(long timeout, TimeUnit unit) {
+        long target = this.accepted.get();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        this.flush();
+
+        synchronized (this.executed) {
+            while (this.written.get() + this.failed.get() < target) {
+                long wait = deadline - System.nanoTime();
+                if (wait <= 0 || !this.flusher.isAlive()) return false;
+
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this.executed, wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the number of statements waiting to be executed.
+     *
+     * @return int
+     */
+    public final int getDepth() {
+        return this.pending.get();
+    }
+
+    /**
+     * Returns the time taken by each flush, in nanoseconds.
+     *
+     * @return LatencyHistogram
+     */
+    public final LatencyHistogram getFlushLatency() {
+        return this.flushLatency;
+    }
+
+    public final long getWritten() {
+        return this.written.get();
+    }
+
+    /**
+     * Returns the number of statements which failed even when retried
+     * alone.
+     *
+     * @return long
+     */
+    public final long getFailed() {
+        return this.failed.get();
+    }
+
+    /**
+     * Returns the number of statements refused by submit().
+     *
+     * @return long
+     */
+    public final long getRejected() {
+        return this.rejected.get();
+    }
+
+    public final boolean isRunning() {
+        return this.running;
+    }
+
+    /**
+     * Stops accepting statements, and waits for those already queued to be
+     * executed.
+     */
+    public final void close() {
+        this.running = false;
+        LockSupport.unpark(this.flusher);
+
+        try {
+            this.flusher.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Flusher thread: flushes on the size or time threshold until closed
+    private void drain() {
+        long lastFlush = System.nanoTime();
+
+        while (this.running || !this.queue.isEmpty()) {
+            long wait = lastFlush + this.flushInterval - System.nanoTime();
+
+            if (this.running && !this.flushRequested && wait > 0 &&
+                    this.pending.get() < this.batchSize) {
+                LockSupport.parkNanos(this, wait);
+                continue;
+            }
+
+            this.flushRequested = false;
+            lastFlush = System.nanoTime();
+
+            List<StatementObject> batch = new ArrayList<StatementObject>(
+                    Math.min(this.pending.get(), MAX_FLUSH));
+            StatementObject stmt;
+
+            while (batch.size() < MAX_FLUSH &&
+                    (stmt = this.queue.poll()) != null) {
+                this.pending.decrementAndGet();
+                batch.add(stmt);
+            }
+
+            if (!batch.isEmpty()) this.execute(batch);
+        }
+    }
+
+    private void execute(List<StatementObject> batch) {
+        long start = System.nanoTime();
+
+        try {
+            if (this.manager.executeBatch(batch)) {
+                this.written.addAndGet(batch.size());
+                return;
+            }
+
+            this.manager.getPlugin().sendConsoleMessage(Level.WARNING,
+                    this.manager.getPlugin().getLocalizationManager()
+                            .getLocalString("DB_BATCH_RETRY"));
+
+            for (StatementObject stmt : batch) {
+                if (this.manager.executeStatement(stmt)) {
+                    this.written.incrementAndGet();
+                } else {
+                    this.failed.incrementAndGet();
+                }
+            }
+        } catch (RuntimeException e) {
+            this.failed.addAndGet(batch.size());
+            e.printStackTrace();
+        } finally {
+            this.flushLatency.record(System.nanoTime() - start);
+
+            synchronized (this.executed) {
+                this.executed.notifyAll();
+            }
+        }
+    }
+}
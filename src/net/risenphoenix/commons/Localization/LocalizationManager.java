@@ -47,6 +47,9 @@ public class LocalizationManager {
     private String selectedLanguage;
     private FileConfiguration loadedLanguage;
 
+    // Incremented whenever a translation changes
+    private volatile int version = 0;
+
     public LocalizationManager(final Plugin plugin, String langID) {
         File f = new File(plugin.getDataFolder() + File.separator + langID +
                 ".yml");
@@ -103,8 +106,44 @@ public class LocalizationManager {
                 "executed from Console.");
         this.defaultTranslation.put("NO_CMD", "An invalid command was " +
                 "specified.");
+        this.defaultTranslation.put("CMD_THROTTLED", "You are using this " +
+                "command too often. Seconds until it may be used again: ");
+        this.defaultTranslation.put("CMD_SUGGEST", "Did you mean: ");
         this.defaultTranslation.put("CMD_NULL_ERR", "An error occurred while " +
                 "generating a Command Instance. The command has been aborted.");
+        this.defaultTranslation.put("CMD_CTOR_ERR", "Failed to resolve the " +
+                "(Plugin, String[], CommandType) constructor for command " +
+                "class: ");
+        this.defaultTranslation.put("CMD_ASYNC_ERR", "An error occurred " +
+                "while executing an asynchronous command. Command-ID: ");
+        this.defaultTranslation.put("CMD_ASYNC_FULL", "The server is too " +
+                "busy to run this command. Please try again shortly.");
+        this.defaultTranslation.put("HELP_HDR", "Available commands, page ");
+        this.defaultTranslation.put("HELP_NONE", "There are no commands " +
+                "available to you.");
+        this.defaultTranslation.put("HELP_NO_PAGE", "There is no such help " +
+                "page. Number of pages: ");
+        this.defaultTranslation.put("AUDIT_ERR", "The audit log could not " +
+                "be written, and has stopped recording: ");
+        this.defaultTranslation.put("TRACE_ON", "Parse tracing enabled " +
+                "for: ");
+        this.defaultTranslation.put("TRACE_OFF", "Parse tracing disabled.");
+        this.defaultTranslation.put("TRACE_CLEARED", "Parse trace cleared.");
+        this.defaultTranslation.put("TRACE_HDR", "Recent parse decisions " +
+                "(oldest first):");
+        this.defaultTranslation.put("TRACE_NONE", "No parse decisions " +
+                "have been recorded.");
+        this.defaultTranslation.put("TASK_PROGRESS", "Progress of task ");
+        this.defaultTranslation.put("TASK_DONE", "Completed task ");
+        this.defaultTranslation.put("TASK_CANCELLED", "Cancelled task ");
+        this.defaultTranslation.put("TASK_FAILED", "An error occurred, " +
+                "and the following task was stopped: ");
+        this.defaultTranslation.put("TASK_ERR", "An error occurred while " +
+                "running task: ");
+        this.defaultTranslation.put("CMD_STATS_HDR", "Command latency " +
+                "(slowest first):");
+        this.defaultTranslation.put("CMD_STATS_NONE", "No commands have " +
+                "been executed yet.");
         this.defaultTranslation.put("BAD_PARSE_SET", "The parse instructions " +
                 "for this Parser have not been determined. Please override " +
                 "method Parser.parseCommand() in your parsing class.");
@@ -146,6 +185,22 @@ public class LocalizationManager {
         this.defaultTranslation.put("DB_DEBUG_ACTIVE", "Database Debugging " +
                 "is active. All SQL queries will be logged as they are " +
                 "received.");
+        this.defaultTranslation.put("DB_ASYNC_FULL", "Too many database " +
+                "operations are waiting; an asynchronous statement or query " +
+                "was refused.");
+        this.defaultTranslation.put("DB_ASYNC_SHUTDOWN", "The database " +
+                "manager has been shut down; an asynchronous statement or " +
+                "query was refused.");
+        this.defaultTranslation.put("DB_BATCH_RETRY", "A batch of queued " +
+                "statements failed and was rolled back; retrying each " +
+                "statement alone.");
+        this.defaultTranslation.put("DB_POOL_TIMEOUT", "Timed out waiting " +
+                "for a database connection after ");
+        this.defaultTranslation.put("DB_POOL_CLOSED", "The database " +
+                "connection pool is closed.");
+        this.defaultTranslation.put("DB_POOL_LEAK", "A database connection " +
+                "has not been handed back, and may have leaked. Borrowed by " +
+                "thread ");
         this.defaultTranslation.put("BAD_SQL_INPUT", "A parameter passed to " +
                 "the StatementObject is invalid! Valid parameters are those " +
                 "of type String and type Integer.");
@@ -174,6 +229,7 @@ public class LocalizationManager {
 
     public final void addDefaultValue(String key, String value) {
         this.defaultTranslation.put(key, value);
+        this.version++;
     }
 
     public final void appendLocalizationStore(LocalizationStore values) {
@@ -182,6 +238,18 @@ public class LocalizationManager {
         finalMap.putAll(values.getValues());
 
         this.defaultTranslation = finalMap;
+        this.version++;
+    }
+
+    /**
+     * Returns a number which changes whenever a translation is added or
+     * replaced, so that text rendered from the translations can be cached
+     * until then.
+     *
+     * @return int
+     */
+    public final int getVersion() {
+        return this.version;
     }
 
 }
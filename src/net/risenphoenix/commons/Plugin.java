@@ -30,17 +30,23 @@
 
 package net.risenphoenix.commons;
 
+import net.risenphoenix.commons.audit.AuditLog;
 import net.risenphoenix.commons.commands.*;
 import net.risenphoenix.commons.configuration.ConfigurationManager;
+import net.risenphoenix.commons.database.DatabaseManager;
+import net.risenphoenix.commons.database.WriteBehindQueue;
 import net.risenphoenix.commons.localization.LocalizationManager;
+import net.risenphoenix.commons.tasks.TaskRunner;
+import net.risenphoenix.commons.util.PermissionCache;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.command.CommandSender;
-import org.bukkit.entity.Player;
 import org.bukkit.plugin.java.JavaPlugin;
 
-import java.lang.reflect.Constructor;
+import java.io.File;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 public class Plugin extends JavaPlugin {
@@ -48,6 +54,13 @@ public class Plugin extends JavaPlugin {
     private LocalizationManager LM;
     private CommandManager CM;
     private ConfigurationManager ConfigM;
+    private PermissionCache PC;
+    private TaskRunner TR;
+    private volatile AuditLog AL;
+    private final List<WriteBehindQueue> WBQ =
+            new CopyOnWriteArrayList<WriteBehindQueue>();
+    private final List<DatabaseManager> DBM =
+            new CopyOnWriteArrayList<DatabaseManager>();
 
     private String pluginName;
     private ChatColor pluginColor = ChatColor.GOLD;
@@ -64,13 +77,29 @@ public class Plugin extends JavaPlugin {
         this.LM = new LocalizationManager(this, this.getConfig()
                 .getString("language"));
         this.ConfigM = new ConfigurationManager(this);
+        this.PC = new PermissionCache(this);
+        this.getServer().getPluginManager().registerEvents(this.PC, this);
         this.CM = new CommandManager(this);
+        this.TR = new TaskRunner(this);
         this.onStartup();
     }
 
     @Override
     public final void onDisable() {
-        this.onShutdown();
+        try {
+            // Statements queued so far are written while the connections
+            // the plugin closes in onShutdown() are still open
+            for (WriteBehindQueue queue : this.WBQ) {
+                queue.flush(30, TimeUnit.SECONDS);
+            }
+
+            // As is asynchronous work already submitted to a DatabaseManager
+            for (DatabaseManager manager : this.DBM) manager.shutdown();
+
+            this.onShutdown();
+        } finally {
+            this.shutdownLibrary();
+        }
     }
 
     @Override
@@ -78,88 +107,106 @@ public class Plugin extends JavaPlugin {
                                    org.bukkit.command.Command root,
                                    String commandLabel, String[] args) {
 
-        /* THIS CODE IS REQUIRED FOR THE COMMAND PARSER TO WORK CORRECTLY */
-        // Append Command Root to the list of arguments
-        List<String> argsPre = new LinkedList<String>(Arrays.asList(args));
-        argsPre.add(0, root.getName());
-
-        // Convert back to Array
-        String[] argsFinal = new String[argsPre.size()];
-        argsFinal = argsPre.toArray(argsFinal);
-        /* THIS CODE IS REQUIRED FOR THE COMMAND PARSER TO WORK CORRECTLY */
+        // View the Command Root and arguments together, without copying
+        ArgumentView view = new ArgumentView(root.getName(), args);
 
         // Parse
-        ParseResult pResult = this.CM.parseCommand(argsFinal);
+        long start = System.nanoTime();
+        ParseResult pResult = this.CM.parseCommand(view, sender);
+        long parsed = System.nanoTime();
 
-        // If the Parser returned a Command
-        if (pResult.getResult() == ResultType.SUCCESS) {
-            /*
-             * A new command instance must be created when a command is called,
-             * so as to prevent static commands from being served to players.
-             * This prevents any form of data swappage between two different
-             * players executing the same command at the same time.
-             */
-
-            // New Command Instance.
-            Command cmd = null;
-
-            // The dirty dynamic hack :D
-            try {
-                // Fetch Class Type
-                Class<?> clazz = Class.forName(
-                        pResult.getCommand().getClass().getName());
-
-                // Create the Constructor for the Command class. This works
-                // only because all commands extend Command, which requires
-                // these three arguments to be constructed.
-                Constructor<?> ctor = clazz.getConstructor(
-                        Plugin.class, String[].class, CommandType.class);
-
-                // Create the specified Command Instance
-                cmd = (Command) ctor.newInstance(this,
-                        pResult.getCommand().getCallArgs(),
-                        pResult.getCommand().getType());
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+        CommandStatistics stats = (pResult.getCommand() == null) ? null :
+                this.CM.getStatistics(pResult.getCommand());
+        if (stats != null) stats.recordParse(parsed - start);
 
-            // If Player is calling this command, check Permissions and execute
-            if (cmd != null) {
-                if (sender instanceof Player) {
-                    if (!cmd.onCall(sender, args)) {
-                        this.sendPlayerMessage(sender,
-                                this.LM.getLocalString("PERM_ERR"));
-                    }
+        ResultType outcome = pResult.getResult();
 
-                    // If Console is calling Command, check if Command is executable
-                } else {
-                    if (!cmd.canConsoleExecute()) {
-                        this.sendConsoleMessage(Level.INFO,
-                                this.LM.getLocalString("NO_CONSOLE"));
-                    } else {
-                        cmd.onCall(sender, args);
-                    }
-                }
-            } else {
-                sendPlayerMessage(sender, getLocalizationManager()
-                                .getLocalString("CMD_NULL_ERR"));
-            }
+        // If the Parser returned a Command
+        if (outcome == ResultType.SUCCESS) {
+            // Console, permission and throttle checks, construction and
+            // execution are stages of the Command's interceptor chain
+            outcome = this.CM.dispatch(pResult.getCommand(), sender, view);
 
             // If the Parser returned a Command, but the Argument count was bad
         } else if (pResult.getResult() == ResultType.BAD_NUM_ARGS) {
             this.sendPlayerMessage(sender,
                     this.LM.getLocalString("NUM_ARGS_ERR"));
 
+            // If the Parser returned a Command, but an Argument was illegal
+        } else if (pResult.getResult() == ResultType.ILLEGAL_ARGS) {
+            this.sendPlayerMessage(sender,
+                    this.LM.getLocalString("ILL_ARGS_ERR"));
+
             // If the Parser did not return a Command
         } else if (pResult.getResult() == ResultType.FAIL) {
             this.sendPlayerMessage(sender, this.LM.getLocalString("NO_CMD"));
+
+            // Suggest the nearest Commands the sender could have meant
+            List<String> near = this.CM.getSuggestions(view, sender);
+
+            if (!near.isEmpty()) {
+                StringBuilder sb = new StringBuilder();
+
+                for (String path : near) {
+                    if (sb.length() > 0) sb.append(", ");
+                    sb.append('/').append(path);
+                }
+
+                this.sendPlayerMessage(sender,
+                        this.LM.getLocalString("CMD_SUGGEST") + sb);
+            }
+        }
+
+        // Queue the call for the audit trail; never waits on the disk
+        AuditLog audit = this.AL;
+
+        if (audit != null && audit.isAudited(pResult.getCommand())) {
+            audit.record(sender, pResult.getCommand(), view, outcome);
         }
 
         return true;
     }
 
+    @Override
+    public final List<String> onTabComplete(CommandSender sender,
+                                            org.bukkit.command.Command root,
+                                            String alias, String[] args) {
+        // Append Command Root to the list of arguments
+        String[] argsFinal = new String[args.length + 1];
+        argsFinal[0] = root.getName();
+        System.arraycopy(args, 0, argsFinal, 1, args.length);
+
+        return this.CM.getCompletionService().complete(sender, argsFinal);
+    }
+
 	/* Library Specific Methods */
 
+    // Each step runs even if one before it fails. Commands and tasks stop
+    // first, as they may still write to the queues and the audit log
+    private void shutdownLibrary() {
+        try {
+            if (this.CM != null) this.CM.getAsyncDispatcher().shutdown();
+        } finally {
+            try {
+                if (this.TR != null) this.TR.shutdown();
+            } finally {
+                try {
+                    // Stops the workers of managers first used in onShutdown()
+                    for (DatabaseManager manager : this.DBM) manager.shutdown();
+                    this.DBM.clear();
+                } finally {
+                    try {
+                        // Statements queued during onShutdown() are executed
+                        for (WriteBehindQueue queue : this.WBQ) queue.close();
+                        this.WBQ.clear();
+                    } finally {
+                        if (this.AL != null) this.AL.close();
+                    }
+                }
+            }
+        }
+    }
+
     public void onStartup() {
         throw new UnsupportedOperationException(
                 this.LM.getLocalString("NO_IMPLEMENT"));
@@ -195,6 +242,62 @@ public class Plugin extends JavaPlugin {
         return this.CM;
     }
 
+    public final PermissionCache getPermissionCache() {
+        return this.PC;
+    }
+
+    public final TaskRunner getTaskRunner() {
+        return this.TR;
+    }
+
+    /**
+     * Starts recording calls to audited Commands into the <i>audit</i>
+     * directory of the plugin's data folder, and returns the AuditLog doing
+     * so. Calling this method again returns the same AuditLog.
+     *
+     * @return AuditLog
+     */
+    public final synchronized AuditLog enableAuditLog() {
+        if (this.AL == null) {
+            this.AL = new AuditLog(this, new File(this.getDataFolder(),
+                    "audit"));
+        }
+
+        return this.AL;
+    }
+
+    /**
+     * Returns the AuditLog, or null if it has not been enabled.
+     *
+     * @return AuditLog
+     */
+    public final AuditLog getAuditLog() {
+        return this.AL;
+    }
+
+    /**
+     * Closes the WriteBehindQueue passed when this plugin is disabled, so
+     * that the statements it holds are written. Queues register themselves
+     * when created.
+     *
+     * @param queue
+     */
+    public final void registerWriteBehindQueue(WriteBehindQueue queue) {
+        this.WBQ.add(queue);
+    }
+
+    /**
+     * Shuts down the DatabaseManager passed when this plugin is disabled,
+     * before onShutdown() is called, so that its asynchronous work completes
+     * while the connections it uses are still open. Managers register
+     * themselves when they first run work asynchronously.
+     *
+     * @param manager
+     */
+    public final void registerDatabaseManager(DatabaseManager manager) {
+        if (!this.DBM.contains(manager)) this.DBM.add(manager);
+    }
+
     public final void setPluginName(ChatColor color, String name) {
         this.pluginName = "[" + name + "] ";
         this.pluginColor = color;
@@ -214,6 +317,14 @@ public class Plugin extends JavaPlugin {
                 this.messageColor + message);
     }
 
+    public final void runOnMainThread(Runnable task) {
+        if (Bukkit.isPrimaryThread()) {
+            task.run();
+        } else {
+            this.getServer().getScheduler().runTask(this, task);
+        }
+    }
+
     public final void sendConsoleMessage(Level level, String message) {
         Bukkit.getLogger().log(level, pluginName + message);
     }
@@ -104,15 +104,8 @@ public final class Broadcast {
     }
 
     private boolean hasPermission(Player player) {
-        // Check for OP Status
-        if (player.isOp()) return true;
-
-        // If not OP, check for permissions
-        for (Permission p : this.requiredPerms) {
-            if (!player.hasPermission(p)) return false;
-        }
-
-        // If the check passed, return true
-        return true;
+        // Check for OP Status, then for cached permission decisions
+        return this.plugin.getPermissionCache().hasPermissions(player,
+                this.requiredPerms);
     }
 }
\ No newline at end of file
@@ -0,0 +1,306 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.audit;
+
+import net.risenphoenix.commons.Plugin;
+import net.risenphoenix.commons.commands.ArgumentView;
+import net.risenphoenix.commons.commands.Command;
+import net.risenphoenix.commons.commands.ResultType;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+
+/**
+ * Append-only audit trail of command calls.</br>
+ * <p/>
+ * </br>Calls are recorded by Plugin.onCommand(), which only places an
+ * {@link AuditRecord} on a lock-free queue; the calling thread never waits
+ * for the disk. A single background thread drains the queue in batches and
+ * appends the records to memory-mapped segment files in the audit
+ * directory. When a segment is full, a new one is started, and the oldest
+ * segments are deleted once there are more than the retention limit. Should
+ * the writer fall far behind, further records are dropped and counted
+ * rather than allowed to exhaust memory.</br>
+ * <p/>
+ * </br>By default only Commands flagged with Command.setAudited(true) are
+ * recorded. Segments can be read back with {@link AuditReader}.
+ */
+public class AuditLog {
+
+    static final int MAGIC = 0x52504155; // "RPAU"
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final String PREFIX = "audit-";
+    static final String SUFFIX = ".seg";
+
+    private static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+    private static final int DEFAULT_MAX_SEGMENTS = 32;
+    private static final int MAX_PENDING = 65536;
+    private static final int BATCH_SIZE = 512;
+    private static final long IDLE_WAIT = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long FORCE_INTERVAL = 1000L;
+
+    private final Plugin plugin;
+    private final File directory;
+    private final int segmentSize;
+    private final int maxSegments;
+
+    private final Queue<AuditRecord> queue =
+            new ConcurrentLinkedQueue<AuditRecord>();
+    private final AtomicInteger pending = new AtomicInteger(0);
+    private final AtomicLong written = new AtomicLong(0);
+    private final AtomicLong dropped = new AtomicLong(0);
+
+    private volatile boolean auditAll = false;
+    private volatile boolean running = true;
+    private final Thread writer;
+
+    // Writer thread only
+    private MappedByteBuffer segment;
+    private long segmentNumber;
+    private long lastForce;
+
+    public AuditLog(final Plugin plugin, File directory) {
+        this(plugin, directory, DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_SEGMENTS);
+    }
+
+    public AuditLog(final Plugin plugin, File directory, int segmentSize,
+                    int maxSegments) {
+        this.plugin = plugin;
+        this.directory = directory;
+        this.segmentSize = Math.max(HEADER_SIZE + 1024, segmentSize);
+        this.maxSegments = Math.max(1, maxSegments);
+
+        this.writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        }, plugin.getClass().getSimpleName() + "-Audit");
+
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Sets whether every call is recorded, including calls to Commands not
+     * flagged as audited and calls which matched no Command.
+     *
+     * @param auditAll
+     */
+    public final void setAuditAll(boolean auditAll) {
+        this.auditAll = auditAll;
+    }
+
+    public final boolean isAuditingAll() {
+        return this.auditAll;
+    }
+
+    /**
+     * Returns whether a call to the registered Command passed, which may be
+     * null, should be recorded.
+     *
+     * @param cmd
+     * @return boolean
+     */
+    public final boolean isAudited(Command cmd) {
+        return this.auditAll || (cmd != null && cmd.isAudited());
+    }
+
+    /**
+     * Queues a record of the call passed. Never blocks.
+     *
+     * @param sender
+     * @param cmd the registered Command called, or null
+     * @param input the input, root command included
+     * @param result the outcome of the call, as returned by dispatch()
+     */
+    public final void record(CommandSender sender, Command cmd,
+                             ArgumentView input, ResultType result) {
+        if (!this.running) {
+            this.dropped.incrementAndGet();
+            return;
+        }
+
+        if (this.pending.incrementAndGet() > MAX_PENDING) {
+            this.pending.decrementAndGet();
+            this.dropped.incrementAndGet();
+            return;
+        }
+
+        String name = (cmd == null) ? null : (cmd.getName() != null) ?
+                cmd.getName() : Arrays.toString(cmd.getCallArgs());
+
+        this.queue.add(new AuditRecord(System.currentTimeMillis(),
+                (sender instanceof Player) ?
+                        ((Player) sender).getUniqueId() : null,
+                sender.getName(), name, input.toString(), result));
+    }
+
+    /**
+     * Returns the number of records written to disk.
+     *
+     * @return long
+     */
+    public final long getWritten() {
+        return this.written.get();
+    }
+
+    /**
+     * Returns the number of records dropped because the writer had fallen
+     * too far behind, the log was closed, or the record was larger than a
+     * segment.
+     *
+     * @return long
+     */
+    public final long getDropped() {
+        return this.dropped.get();
+    }
+
+    public final File getDirectory() {
+        return this.directory;
+    }
+
+    /**
+     * Stops accepting records, and waits briefly for those already queued to
+     * be written.
+     */
+    public final void close() {
+        this.running = false;
+        LockSupport.unpark(this.writer);
+
+        try {
+            this.writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Writer thread: drains the queue in batches until closed
+    private void write() {
+        try {
+            this.directory.mkdirs();
+            this.segmentNumber = AuditReader.lastSegmentNumber(
+                    this.directory);
+            this.roll();
+
+            while (this.running || !this.queue.isEmpty()) {
+                int batch = 0;
+                AuditRecord record;
+
+                while (batch < BATCH_SIZE &&
+                        (record = this.queue.poll()) != null) {
+                    this.pending.decrementAndGet();
+                    this.append(record);
+                    batch++;
+                }
+
+                if (batch == 0) {
+                    this.force(false);
+                    LockSupport.parkNanos(this, IDLE_WAIT);
+                }
+            }
+
+            this.force(true);
+        } catch (IOException e) {
+            this.running = false;
+            this.plugin.sendConsoleMessage(Level.SEVERE, this.plugin
+                    .getLocalizationManager().getLocalString("AUDIT_ERR") +
+                    e.getMessage());
+        }
+    }
+
+    private void append(AuditRecord record) throws IOException {
+        if (!record.encode(this.segment)) {
+            this.roll();
+            if (!record.encode(this.segment)) {
+                // Larger than an empty segment; it can never be written
+                this.dropped.incrementAndGet();
+                return;
+            }
+        }
+
+        this.written.incrementAndGet();
+    }
+
+    // Starts a new segment, deleting the oldest beyond the retention limit
+    private void roll() throws IOException {
+        this.force(true);
+        this.segmentNumber++;
+
+        File file = new File(this.directory, AuditReader.segmentName(
+                this.segmentNumber));
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+
+        try {
+            raf.setLength(this.segmentSize);
+            this.segment = raf.getChannel().map(FileChannel.MapMode.READ_WRITE,
+                    0, this.segmentSize);
+        } finally {
+            // The mapping remains valid once the file is closed
+            raf.close();
+        }
+
+        this.segment.putInt(MAGIC);
+        this.segment.putShort(VERSION);
+        this.segment.putShort((short) 0);
+        this.segment.putLong(System.currentTimeMillis());
+
+        File[] segments = AuditReader.listSegments(this.directory);
+
+        for (int i = 0; i < segments.length - this.maxSegments; i++) {
+            if (!segments[i].delete()) break;
+        }
+    }
+
+    private void force(boolean always) {
+        long now = System.currentTimeMillis();
+
+        if (this.segment != null &&
+                (always || now - this.lastForce >= FORCE_INTERVAL)) {
+            this.segment.force();
+            this.lastForce = now;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.audit;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Reads back the segment files written by an {@link AuditLog}.</br>
+ * <p/>
+ * </br>May also be run on its own to print an audit directory, or a single
+ * segment, as text:
+ * <ul><li><em>java -cp RP-Commons.jar
+ * net.risenphoenix.commons.audit.AuditReader plugins/MyPlugin/audit</em>
+ * </li></ul>
+ */
+public final class AuditReader {
+
+    private AuditReader() { }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: AuditReader <directory | segment>");
+            return;
+        }
+
+        File path = new File(args[0]);
+        File[] files = path.isDirectory() ? listSegments(path) :
+                new File[]{path};
+
+        for (File file : files) {
+            for (AuditRecord record : readSegment(file)) {
+                System.out.println(record);
+            }
+        }
+    }
+
+    /**
+     * Returns every record in the audit directory passed, oldest first.
+     *
+     * @param directory
+     * @return List<AuditRecord>
+     * @throws IOException
+     */
+    public static List<AuditRecord> readAll(File directory)
+            throws IOException {
+        List<AuditRecord> records = new ArrayList<AuditRecord>();
+
+        for (File file : listSegments(directory)) {
+            records.addAll(readSegment(file));
+        }
+
+        return records;
+    }
+
+    /**
+     * Returns every record in the segment file passed, in the order written.
+     * A segment still being written may be read; records not yet complete
+     * are not returned.
+     *
+     * @param file
+     * @return List<AuditRecord>
+     * @throws IOException
+     */
+    public static List<AuditRecord> readSegment(File file) throws IOException {
+        List<AuditRecord> records = new ArrayList<AuditRecord>();
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+        try {
+            ByteBuffer buffer = raf.getChannel().map(
+                    FileChannel.MapMode.READ_ONLY, 0, raf.length());
+
+            if (buffer.remaining() < AuditLog.HEADER_SIZE ||
+                    buffer.getInt() != AuditLog.MAGIC) {
+                throw new IOException("Not an audit segment: " + file);
+            }
+
+            short version = buffer.getShort();
+            if (version != AuditLog.VERSION) {
+                throw new IOException("Unsupported audit segment version " +
+                        version + ": " + file);
+            }
+
+            buffer.position(AuditLog.HEADER_SIZE);
+            AuditRecord record;
+
+            while ((record = AuditRecord.decode(buffer)) != null) {
+                records.add(record);
+            }
+        } finally {
+            raf.close();
+        }
+
+        return records;
+    }
+
+    /**
+     * Returns the segment files in the directory passed, oldest first.
+     *
+     * @param directory
+     * @return File[]
+     */
+    public static File[] listSegments(File directory) {
+        File[] files = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return segmentNumber(file) >= 0;
+            }
+        });
+
+        if (files == null) return new File[0];
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long na = segmentNumber(a);
+                long nb = segmentNumber(b);
+                return (na < nb) ? -1 : ((na == nb) ? 0 : 1);
+            }
+        });
+
+        return files;
+    }
+
+    static String segmentName(long number) {
+        return String.format("%s%010d%s", AuditLog.PREFIX, number,
+                AuditLog.SUFFIX);
+    }
+
+    static long lastSegmentNumber(File directory) {
+        File[] files = listSegments(directory);
+
+        return (files.length == 0) ? 0 :
+                segmentNumber(files[files.length - 1]);
+    }
+
+    // Returns the number of the segment file passed, or -1 if not a segment
+    private static long segmentNumber(File file) {
+        String name = file.getName();
+
+        if (!name.startsWith(AuditLog.PREFIX) ||
+                !name.endsWith(AuditLog.SUFFIX)) {
+            return -1;
+        }
+
+        try {
+            return Long.parseLong(name.substring(AuditLog.PREFIX.length(),
+                    name.length() - AuditLog.SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.audit;
+
+import net.risenphoenix.commons.commands.ResultType;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * A single command call recorded by the {@link AuditLog}.</br>
+ * <p/>
+ * </br>Records are encoded as a length-prefixed binary structure: the
+ * time of the call, the UUID of the Player who made it (zero for other
+ * senders), the ordinal of the parse result, and the sender's name, the
+ * name of the Command called and the input as typed, as UTF-8 strings of at
+ * most 65535 bytes each.
+ */
+public final class AuditRecord {
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int MAX_STRING = 0xFFFF;
+
+    private final long time;
+    private final UUID senderId;
+    private final String sender;
+    private final String command;
+    private final String input;
+    private final ResultType result;
+
+    public AuditRecord(long time, UUID senderId, String sender,
+                       String command, String input, ResultType result) {
+        this.time = time;
+        this.senderId = senderId;
+        this.sender = sender;
+        this.command = command;
+        this.input = input;
+        this.result = result;
+    }
+
+    public long getTime() {
+        return this.time;
+    }
+
+    /**
+     * Returns the UUID of the Player who made the call, or null if the call
+     * was made by another CommandSender.
+     *
+     * @return UUID
+     */
+    public UUID getSenderId() {
+        return this.senderId;
+    }
+
+    public String getSender() {
+        return this.sender;
+    }
+
+    /**
+     * Returns the name of the Command called, or null if the call matched
+     * no Command.
+     *
+     * @return String
+     */
+    public String getCommand() {
+        return this.command;
+    }
+
+    public String getInput() {
+        return this.input;
+    }
+
+    public ResultType getResult() {
+        return this.result;
+    }
+
+    /**
+     * Writes this record, length prefix included, to the buffer passed.
+     * Returns false, writing nothing, if the buffer has too little room.
+     *
+     * @param buffer
+     * @return boolean
+     */
+    boolean encode(ByteBuffer buffer) {
+        byte[] sender = bytes(this.sender);
+        byte[] command = bytes(this.command);
+        byte[] input = bytes(this.input);
+        int length = 8 + 16 + 1 + 6 + sender.length + command.length +
+                input.length;
+
+        if (buffer.remaining() < 4 + length) return false;
+
+        // The length is written last, so that a reader never sees a record
+        // which is only partly written
+        int start = buffer.position();
+        buffer.putInt(0);
+        buffer.putLong(this.time);
+        buffer.putLong((this.senderId == null) ? 0 :
+                this.senderId.getMostSignificantBits());
+        buffer.putLong((this.senderId == null) ? 0 :
+                this.senderId.getLeastSignificantBits());
+        buffer.put((byte) ((this.result == null) ? -1 :
+                this.result.ordinal()));
+        putString(buffer, sender);
+        putString(buffer, command);
+        putString(buffer, input);
+        buffer.putInt(start, length);
+
+        return true;
+    }
+
+    /**
+     * Reads the next record from the buffer passed. Returns null if the
+     * buffer holds no further record.
+     *
+     * @param buffer
+     * @return AuditRecord
+     */
+    static AuditRecord decode(ByteBuffer buffer) {
+        if (buffer.remaining() < 4) return null;
+
+        int length = buffer.getInt();
+        if (length <= 0 || length > buffer.remaining()) return null;
+
+        long time = buffer.getLong();
+        long most = buffer.getLong();
+        long least = buffer.getLong();
+        int ordinal = buffer.get();
+
+        String sender = getString(buffer);
+        String command = getString(buffer);
+        String input = getString(buffer);
+
+        ResultType[] results = ResultType.values();
+
+        return new AuditRecord(time, (most == 0 && least == 0) ? null :
+                new UUID(most, least), sender, command.isEmpty() ? null :
+                command, input, (ordinal >= 0 && ordinal < results.length) ?
+                results[ordinal] : null);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[%s] %s%s: /%s -> %s%s",
+                new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(
+                        new Date(this.time)), this.sender,
+                (this.senderId == null) ? "" : " (" + this.senderId + ")",
+                this.input, this.result,
+                (this.command == null) ? "" : " (" + this.command + ")");
+    }
+
+    private static byte[] bytes(String value) {
+        if (value == null) return new byte[0];
+
+        byte[] bytes = value.getBytes(UTF_8);
+        if (bytes.length <= MAX_STRING) return bytes;
+
+        byte[] truncated = new byte[MAX_STRING];
+        System.arraycopy(bytes, 0, truncated, 0, MAX_STRING);
+        return truncated;
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+
+        return new String(bytes, UTF_8);
+    }
+}
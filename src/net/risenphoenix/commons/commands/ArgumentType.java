@@ -0,0 +1,312 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.commands;
+
+import org.bukkit.Bukkit;
+
+/**
+ * Types which the variable arguments of a Command may be declared as, each
+ * with the converter applied to the argument when the Command is
+ * parsed.</br>
+ * <p/>
+ * </br>Converters never throw: an argument which cannot be converted yields
+ * null, and the call is then rejected with the <strong>ILL_ARGS_ERR</strong>
+ * message before the Command is constructed.
+ *
+ * @see Command#setArgumentTypes(ArgumentType...)
+ */
+public enum ArgumentType {
+
+    /** Passes the argument through unchanged. */
+    STRING {
+        @Override
+        public Object convert(String arg) {
+            return arg;
+        }
+    },
+
+    /** Converts to an Integer. */
+    INT {
+        @Override
+        public Object convert(String arg) {
+            long value = parseLong(arg, Integer.MIN_VALUE, Integer.MAX_VALUE);
+            return (value == INVALID) ? null : Integer.valueOf((int) value);
+        }
+    },
+
+    /** Converts to a Long. */
+    LONG {
+        @Override
+        public Object convert(String arg) {
+            long value = parseLong(arg, Long.MIN_VALUE + 1, Long.MAX_VALUE);
+            return (value == INVALID) ? null : Long.valueOf(value);
+        }
+    },
+
+    /** Converts to a finite Double. */
+    DOUBLE {
+        @Override
+        public Object convert(String arg) {
+            if (!isDecimal(arg)) return null;
+
+            Double value = Double.valueOf(arg);
+            return value.isInfinite() ? null : value;
+        }
+    },
+
+    /**
+     * Converts to a Long number of milliseconds. Accepts a plain number of
+     * seconds, or amounts suffixed with w, d, h, m, s or ms, such as "1h30m".
+     */
+    DURATION {
+        @Override
+        public Object convert(String arg) {
+            long value = parseDuration(arg);
+            return (value == INVALID) ? null : Long.valueOf(value);
+        }
+    },
+
+    /** Converts to the online Player with exactly the name given. */
+    PLAYER {
+        @Override
+        public Object convert(String arg) {
+            return Bukkit.getPlayerExact(arg);
+        }
+    },
+
+    /** Converts to a UUID, with or without dashes. */
+    UUID {
+        @Override
+        public Object convert(String arg) {
+            return parseUniqueId(arg);
+        }
+    },
+
+    /** Validates a dotted IPv4 address, passing it through unchanged. */
+    IP {
+        @Override
+        public Object convert(String arg) {
+            return isAddress(arg) ? arg : null;
+        }
+    };
+
+    private static final long INVALID = Long.MIN_VALUE;
+
+    /**
+     * Converts the argument passed, returning null if it is not a valid value
+     * of this type.
+     *
+     * @param arg
+     * @return Object
+     */
+    public abstract Object convert(String arg);
+
+    // Returns INVALID on anything but an optionally signed run of digits
+    // within the bounds passed.
+    private static long parseLong(String arg, long min, long max) {
+        int length = arg.length();
+        int i = 0;
+        boolean negative = false;
+
+        if (length == 0) return INVALID;
+
+        if (arg.charAt(0) == '-' || arg.charAt(0) == '+') {
+            negative = arg.charAt(0) == '-';
+            if (++i == length) return INVALID;
+        }
+
+        long limit = negative ? -min : max;
+        long value = 0;
+
+        for (; i < length; i++) {
+            int digit = arg.charAt(i) - '0';
+            if (digit < 0 || digit > 9) return INVALID;
+            if (value > (limit - digit) / 10) return INVALID;
+            value = value * 10 + digit;
+        }
+
+        return negative ? -value : value;
+    }
+
+    // Accepts [sign] digits [. digits] [e [sign] digits]
+    private static boolean isDecimal(String arg) {
+        int length = arg.length();
+        int i = 0;
+        int digits = 0;
+
+        if (i < length && (arg.charAt(i) == '-' || arg.charAt(i) == '+')) i++;
+
+        for (; i < length && isDigit(arg.charAt(i)); i++) digits++;
+
+        if (i < length && arg.charAt(i) == '.') {
+            for (i++; i < length && isDigit(arg.charAt(i)); i++) {
+                digits++;
+            }
+        }
+
+        if (digits == 0) return false;
+
+        if (i < length && (arg.charAt(i) == 'e' || arg.charAt(i) == 'E')) {
+            int exponent = 0;
+            i++;
+
+            if (i < length && (arg.charAt(i) == '-' || arg.charAt(i) == '+')) {
+                i++;
+            }
+
+            for (; i < length && isDigit(arg.charAt(i)); i++) {
+                if (++exponent > 3) return false;
+            }
+
+            if (exponent == 0) return false;
+        }
+
+        return i == length;
+    }
+
+    private static long parseDuration(String arg) {
+        int length = arg.length();
+        if (length == 0) return INVALID;
+
+        long seconds = parseLong(arg, 0, Long.MAX_VALUE / 1000);
+        if (seconds != INVALID) return seconds * 1000;
+
+        long total = 0;
+        int i = 0;
+
+        while (i < length) {
+            long amount = 0;
+            int start = i;
+
+            for (; i < length && isDigit(arg.charAt(i)); i++) {
+                amount = amount * 10 + (arg.charAt(i) - '0');
+                if (amount > Integer.MAX_VALUE) return INVALID;
+            }
+
+            if (i == start || i == length) return INVALID;
+
+            long unit;
+            char c = Character.toLowerCase(arg.charAt(i++));
+
+            if (c == 'm' && i < length &&
+                    Character.toLowerCase(arg.charAt(i)) == 's') {
+                unit = 1L;
+                i++;
+            } else if (c == 'w') {
+                unit = 604800000L;
+            } else if (c == 'd') {
+                unit = 86400000L;
+            } else if (c == 'h') {
+                unit = 3600000L;
+            } else if (c == 'm') {
+                unit = 60000L;
+            } else if (c == 's') {
+                unit = 1000L;
+            } else {
+                return INVALID;
+            }
+
+            total += amount * unit;
+            if (total < 0) return INVALID;
+        }
+
+        return total;
+    }
+
+    private static java.util.UUID parseUniqueId(String arg) {
+        int length = arg.length();
+        boolean dashed = (length == 36);
+
+        if (!dashed && length != 32) return null;
+
+        long most = 0;
+        long least = 0;
+        int digits = 0;
+
+        for (int i = 0; i < length; i++) {
+            char c = arg.charAt(i);
+
+            if (dashed && (i == 8 || i == 13 || i == 18 || i == 23)) {
+                if (c != '-') return null;
+                continue;
+            }
+
+            int value = hexDigit(c);
+            if (value < 0) return null;
+
+            if (digits++ < 16) {
+                most = (most << 4) | value;
+            } else {
+                least = (least << 4) | value;
+            }
+        }
+
+        return new java.util.UUID(most, least);
+    }
+
+    private static boolean isAddress(String arg) {
+        int length = arg.length();
+        int octets = 0;
+        int i = 0;
+
+        while (i < length && octets < 4) {
+            int value = 0;
+            int start = i;
+
+            for (; i < length && isDigit(arg.charAt(i)); i++) {
+                value = value * 10 + (arg.charAt(i) - '0');
+                if (i - start > 2 || value > 255) return false;
+            }
+
+            if (i == start) return false;
+            octets++;
+
+            if (i < length) {
+                if (arg.charAt(i) != '.' || octets == 4) return false;
+                if (++i == length) return false;
+            }
+        }
+
+        return octets == 4 && i == length;
+    }
+
+    // ASCII only; Character.isDigit() also accepts other scripts' digits
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int hexDigit(char c) {
+        if (c >= '0' && c <= '9') return c - '0';
+        if (c >= 'a' && c <= 'f') return c - 'a' + 10;
+        if (c >= 'A' && c <= 'F') return c - 'A' + 10;
+        return -1;
+    }
+}
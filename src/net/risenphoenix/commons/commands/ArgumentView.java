@@ -0,0 +1,318 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.commands;
+
+import org.bukkit.entity.Player;
+
+import java.util.UUID;
+
+/**
+ * Read-only view over the arguments of a single command call.</br>
+ * <p/>
+ * </br>The view joins the root command to the argument array Bukkit hands
+ * the Plugin without copying either, so that the same object can be matched
+ * against the registered Commands and then passed on to the Command which
+ * is executed. Positions are numbered as in a Command's call arguments:
+ * position 0 is the root command, and position 1 is the first argument
+ * typed after it.</br>
+ * <p/>
+ * </br><strong>Ex: </strong><em>/ipc exempt-list ip</em> <strong>-></strong>
+ * get(0) = "ipc", get(1) = "exempt-list", get(2) = "ip".
+ */
+public final class ArgumentView {
+
+    private final String root;
+    private final String[] args;
+    private final int offset;
+
+    // Values converted from typed arguments, by position
+    private Object[] values = null;
+
+    /**
+     * Creates a view over the root command passed followed by the arguments
+     * passed. The array is not copied and must not be modified afterwards.
+     *
+     * @param root
+     * @param args
+     */
+    public ArgumentView(String root, String[] args) {
+        this(root, args, 0);
+    }
+
+    /**
+     * Creates a view over the root command passed followed by the arguments
+     * passed, skipping the first <strong>offset</strong> elements of the
+     * array. The array is not copied and must not be modified afterwards.
+     *
+     * @param root
+     * @param args
+     * @param offset
+     */
+    public ArgumentView(String root, String[] args, int offset) {
+        if (offset < 0 || offset > args.length) {
+            throw new IndexOutOfBoundsException("Offset: " + offset);
+        }
+
+        this.root = root;
+        this.args = args;
+        this.offset = offset;
+    }
+
+    /**
+     * Creates a view over an array which already holds the root command in
+     * its first element.
+     *
+     * @param full
+     * @return ArgumentView
+     */
+    public static ArgumentView of(String[] full) {
+        return new ArgumentView(full[0], full, 1);
+    }
+
+    /**
+     * Returns the number of positions in this view, root command included.
+     *
+     * @return int
+     */
+    public int size() {
+        return 1 + this.args.length - this.offset;
+    }
+
+    public String get(int position) {
+        if (position == 0) return this.root;
+
+        if (position < 0 || position >= this.size()) {
+            throw new IndexOutOfBoundsException("Position: " + position);
+        }
+
+        return this.args[this.offset + position - 1];
+    }
+
+    public boolean has(int position) {
+        return position >= 0 && position < this.size();
+    }
+
+    public String getRoot() {
+        return this.root;
+    }
+
+    /**
+     * Returns the value converted from the typed argument at the position
+     * passed, or null if the position is absent or was not typed.
+     *
+     * @param position
+     * @return Object
+     * @see Command#setArgumentTypes(ArgumentType...)
+     */
+    public Object getValue(int position) {
+        if (this.values == null || position < 0 ||
+                position >= this.values.length) return null;
+
+        return this.values[position];
+    }
+
+    /**
+     * Returns the Player bound to the PLAYER argument at the position passed.
+     *
+     * @param position
+     * @return Player
+     */
+    public Player getPlayer(int position) {
+        Object value = this.getValue(position);
+        return (value instanceof Player) ? (Player) value : null;
+    }
+
+    /**
+     * Returns the UUID bound to the UUID argument at the position passed.
+     *
+     * @param position
+     * @return UUID
+     */
+    public UUID getUniqueId(int position) {
+        Object value = this.getValue(position);
+        return (value instanceof UUID) ? (UUID) value : null;
+    }
+
+    /**
+     * Returns the number of milliseconds bound to the DURATION argument at
+     * the position passed, or the default value passed.
+     *
+     * @param position
+     * @param def
+     * @return long
+     */
+    public long getDuration(int position, long def) {
+        Object value = this.getValue(position);
+        if (value instanceof Long) return (Long) value;
+
+        if (!this.has(position)) return def;
+        value = ArgumentType.DURATION.convert(this.get(position));
+        return (value == null) ? def : (Long) value;
+    }
+
+    // Called once the typed arguments of the view have been converted
+    void bind(Object[] values) {
+        this.values = values;
+    }
+
+    /**
+     * Returns the arguments following the root command as an array. The
+     * backing array is returned as-is when the view does not skip any of it,
+     * so the result must not be modified.
+     *
+     * @return String[]
+     */
+    public String[] getArguments() {
+        if (this.offset == 0) return this.args;
+
+        String[] copy = new String[this.args.length - this.offset];
+        System.arraycopy(this.args, this.offset, copy, 0, copy.length);
+        return copy;
+    }
+
+    /**
+     * Returns a view with the same root command, in which the argument at the
+     * position passed becomes position 1.
+     *
+     * @param position
+     * @return ArgumentView
+     */
+    public ArgumentView slice(int position) {
+        if (position < 1 || position > this.size()) {
+            throw new IndexOutOfBoundsException("Position: " + position);
+        }
+
+        return new ArgumentView(this.root, this.args,
+                this.offset + position - 1);
+    }
+
+    /**
+     * Joins the arguments from the position passed to the end of the view,
+     * separated by spaces. Returns null if the position lies beyond the end
+     * of the view, and an empty String if it lies just past it.
+     *
+     * @param position
+     * @return String
+     */
+    public String joinFrom(int position) {
+        int size = this.size();
+        if (position > size) return null;
+
+        StringBuilder sb = new StringBuilder();
+
+        for (int i = position; i < size; i++) {
+            if (i > position) sb.append(' ');
+            sb.append(this.get(i));
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Returns the argument at the position passed as an int, or the default
+     * value passed if the position is absent or does not hold an int.
+     *
+     * @param position
+     * @param def
+     * @return int
+     */
+    public int getInt(int position, int def) {
+        long value = this.getLong(position, Long.MIN_VALUE);
+
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            return def;
+        }
+
+        return (int) value;
+    }
+
+    /**
+     * Returns the argument at the position passed as a long, or the default
+     * value passed if the position is absent or does not hold a long.
+     *
+     * @param position
+     * @param def
+     * @return long
+     */
+    public long getLong(int position, long def) {
+        Object value = this.getValue(position);
+        if (value instanceof Number) return ((Number) value).longValue();
+
+        if (!this.has(position)) return def;
+        value = ArgumentType.LONG.convert(this.get(position));
+        return (value == null) ? def : (Long) value;
+    }
+
+    /**
+     * Returns the argument at the position passed as a double, or the
+     * default value passed if the position is absent or does not hold a
+     * number.
+     *
+     * @param position
+     * @param def
+     * @return double
+     */
+    public double getDouble(int position, double def) {
+        Object value = this.getValue(position);
+        if (value instanceof Number) return ((Number) value).doubleValue();
+
+        if (!this.has(position)) return def;
+        value = ArgumentType.DOUBLE.convert(this.get(position));
+        return (value == null) ? def : (Double) value;
+    }
+
+    /**
+     * Returns true if the argument at the position passed is "true", "yes"
+     * or "on" (ignoring case), false if it is "false", "no" or "off", and
+     * the default value passed otherwise.
+     *
+     * @param position
+     * @param def
+     * @return boolean
+     */
+    public boolean getBoolean(int position, boolean def) {
+        if (!this.has(position)) return def;
+
+        String arg = this.get(position);
+
+        if (arg.equalsIgnoreCase("true") || arg.equalsIgnoreCase("yes") ||
+                arg.equalsIgnoreCase("on")) return true;
+        if (arg.equalsIgnoreCase("false") || arg.equalsIgnoreCase("no") ||
+                arg.equalsIgnoreCase("off")) return false;
+
+        return def;
+    }
+
+    @Override
+    public String toString() {
+        return this.joinFrom(0);
+    }
+}
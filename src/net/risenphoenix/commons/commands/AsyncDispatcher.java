@@ -0,0 +1,158 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.commands;
+
+import net.risenphoenix.commons.Plugin;
+import org.bukkit.command.CommandSender;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * Library-owned executor which runs the onExecute() method of Commands
+ * flagged as asynchronous, off the server main thread.</br>
+ * <p/>
+ * </br>Permission and console checks are performed on the main thread before
+ * a Command reaches the dispatcher. Commands which need to call back into the
+ * Bukkit API from a worker should do so through
+ * {@link Command#runOnMainThread(Runnable)}.</br>
+ * <p/>
+ * </br>At most 1024 Commands wait for a worker. Commands dispatched
+ * beyond that, or once the dispatcher has shut down, are refused and the
+ * CommandSender is told so.
+ */
+public class AsyncDispatcher {
+
+    private static final int QUEUE_CAPACITY = 1024;
+
+    private final Plugin plugin;
+    private final ExecutorService executor;
+
+    public AsyncDispatcher(final Plugin plugin) {
+        this(plugin, Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+
+    public AsyncDispatcher(final Plugin plugin, int threads) {
+        this.plugin = plugin;
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L,
+                TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(
+                QUEUE_CAPACITY), new WorkerFactory(plugin));
+
+        ((ThreadPoolExecutor) this.executor).allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queues the Command passed to be executed on a worker. Returns false,
+     * having told the CommandSender, if the Command was refused.
+     *
+     * @param cmd
+     * @param sender
+     * @param args
+     * @return boolean
+     */
+    public final boolean dispatch(final Command cmd,
+                                  final CommandSender sender,
+                                  final ArgumentView args) {
+        return this.dispatch(cmd, sender, args, null);
+    }
+
+    // Dispatches the Command passed, then releases it to the factory passed
+    final boolean dispatch(final Command cmd, final CommandSender sender,
+                           final ArgumentView args,
+                           final CommandFactory factory) {
+        Runnable work = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    cmd.execute(sender, args);
+                } catch (Throwable t) {
+                    plugin.sendConsoleMessage(Level.SEVERE, plugin
+                            .getLocalizationManager()
+                            .getLocalString("CMD_ASYNC_ERR") + cmd.getName());
+                    t.printStackTrace();
+                } finally {
+                    if (factory != null) factory.release(cmd);
+                }
+            }
+        };
+
+        try {
+            this.executor.execute(work);
+            return true;
+        } catch (RejectedExecutionException e) {
+            if (factory != null) factory.release(cmd);
+
+            this.plugin.sendPlayerMessage(sender, this.plugin
+                    .getLocalizationManager().getLocalString("CMD_ASYNC_FULL"));
+            return false;
+        }
+    }
+
+    /**
+     * Stops accepting new Commands and waits briefly for those already
+     * running to complete.
+     */
+    public final void shutdown() {
+        this.executor.shutdown();
+
+        try {
+            if (!this.executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                this.executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            this.executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class WorkerFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+        private final String prefix;
+
+        private WorkerFactory(Plugin plugin) {
+            this.prefix = plugin.getClass().getSimpleName() + "-Command-";
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, this.prefix +
+                    this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -30,8 +30,10 @@
 
 package net.risenphoenix.commons.commands;
 
-import net.risenphoenix.commons.localization.LocalizationManager;
+import net.risenphoenix.commons.tasks.IncrementalTask;
+import net.risenphoenix.commons.tasks.TaskHandle;
 import net.risenphoenix.commons.Plugin;
+import net.risenphoenix.commons.util.PermissionCache;
 import org.bukkit.command.CommandSender;
 import org.bukkit.conversations.ConversationContext;
 import org.bukkit.conversations.ConversationFactory;
@@ -62,15 +64,27 @@ public class Command extends ValidatingPrompt {
     private String help;
 
     private boolean isConsoleExecutable = true;
+    private boolean isAsync = false;
+    private boolean isAudited = false;
+
+    private long cooldown = 0;
+    private int rateLimitPermits = 0;
+    private long rateLimitPeriod = 0;
 
     private String[] callArgs;
+    private ArgumentType[] argTypes = null;
     private int requiredArgs = 0;
 
     private Permission[] commandPerms = null;
 
-    private LocalizationManager LM;
     private ConversationFactory conFactory = null;
 
+    // The registered Command this instance was created from, if any
+    Command prototype = null;
+
+    // Idle instances of this registered Command, if its class is Pooled
+    volatile InstancePool pool = null;
+
     /**
      * <p>
      * <strong>Constructor:</strong> Responsible for the main initialization of
@@ -94,7 +108,6 @@ public class Command extends ValidatingPrompt {
         this.plugin = plugin;
         this.callArgs = callArgs;
         this.type = type;
-        this.LM = this.plugin.getLocalizationManager();
     }
 
     /**
@@ -122,11 +135,57 @@ public class Command extends ValidatingPrompt {
      */
 
     public final boolean onCall(CommandSender sender, String[] args) {
+        return onCall(sender, new ArgumentView(this.callArgs[0], args));
+    }
+
+    /**
+     * Calls this Command with the ArgumentView passed. Behaves as
+     * onCall(CommandSender, String[]), without copying the arguments.
+     *
+     * @param sender
+     * @param args
+     * @return boolean
+     * @see #onCall(CommandSender, String[])
+     */
+    public final boolean onCall(CommandSender sender, ArgumentView args) {
         if (!canExecute(sender)) return false;
-        onExecute(sender, args);
+
+        if (this.isAsync) {
+            this.plugin.getCommandManager().getAsyncDispatcher()
+                    .dispatch(this, sender, args);
+        } else {
+            execute(sender, args);
+        }
+
         return true;
     }
 
+    // Runs onExecute(), recording its latency against the registered Command
+    final void execute(CommandSender sender, ArgumentView args) {
+        CommandStatistics stats = this.plugin.getCommandManager()
+                .getStatistics(this.getPrototype());
+        long start = System.nanoTime();
+
+        try {
+            onExecute(sender, args);
+        } catch (RuntimeException e) {
+            if (stats != null) stats.recordError();
+            throw e;
+        } finally {
+            if (stats != null) stats.recordExecute(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Called when an instance of a {@link Pooled} Command has finished
+     * serving a call, before it is kept for reuse. Override this method to
+     * clear any state kept in the Command's fields during the call. An
+     * instance whose onRelease() throws an exception is discarded.
+     */
+    public void onRelease() {
+        // Do nothing by default
+    }
+
     /**
      * Sets whether this Command can be called by Console or not.</br>
      * <p/>
@@ -143,6 +202,128 @@ public class Command extends ValidatingPrompt {
         this.isConsoleExecutable = consoleCanExecute;
     }
 
+    /**
+     * Sets whether this Command is executed off the server main thread.</br>
+     * <p/>
+     * </br>When set, permission and console checks are still performed on
+     * the main thread, but onExecute() is run by the library's
+     * AsyncDispatcher. This is intended for Commands which spend their time
+     * waiting on the database or other I/O. Any call into the Bukkit API from
+     * onExecute() must then be made through runOnMainThread().</br>
+     * <p/>
+     * </br><strong>TRUE</strong> = Asynchronous, <strong>FALSE</strong> =
+     * Main Thread (default).
+     *
+     * @param async
+     */
+    public final void setAsync(boolean async) {
+        this.isAsync = async;
+    }
+
+    /**
+     * Returns a boolean denoting whether this Command is executed off the
+     * server main thread.
+     *
+     * @return boolean
+     */
+    public final boolean isAsync() {
+        return this.isAsync;
+    }
+
+    /**
+     * Sets whether calls to this Command are recorded by the Plugin's
+     * AuditLog, when one is enabled. Intended for administrative Commands.
+     *
+     * @param audited
+     */
+    public final void setAudited(boolean audited) {
+        this.isAudited = audited;
+    }
+
+    public final boolean isAudited() {
+        return this.isAudited;
+    }
+
+    /**
+     * Sets the time, in milliseconds, a Player must wait between two calls
+     * of this Command. A value of 0 (default) disables the cooldown.
+     *
+     * @param millis
+     */
+    public final void setCooldown(long millis) {
+        this.cooldown = Math.max(0, millis);
+    }
+
+    /**
+     * Returns the cooldown of this Command in milliseconds.
+     *
+     * @return long
+     */
+    public final long getCooldown() {
+        return this.cooldown;
+    }
+
+    /**
+     * Limits each Player to the number of calls passed within any period of
+     * the length passed (in milliseconds). Calls may be made in a burst, and
+     * permits are regained evenly over the period. A permit count of 0
+     * (default) disables the rate limit.
+     *
+     * @param permits
+     * @param periodMillis
+     */
+    public final void setRateLimit(int permits, long periodMillis) {
+        this.rateLimitPermits = (periodMillis > 0) ? Math.max(0, permits) : 0;
+        this.rateLimitPeriod = Math.max(0, periodMillis);
+    }
+
+    /**
+     * Returns the number of calls permitted per rate limit period.
+     *
+     * @return int
+     */
+    public final int getRateLimitPermits() {
+        return this.rateLimitPermits;
+    }
+
+    /**
+     * Returns the length of the rate limit period in milliseconds.
+     *
+     * @return long
+     */
+    public final long getRateLimitPeriod() {
+        return this.rateLimitPeriod;
+    }
+
+    /**
+     * Runs the task passed on the server main thread. If called from the main
+     * thread, the task is run immediately; otherwise it is scheduled to run on
+     * the next server tick.
+     *
+     * @param task
+     */
+    public final void runOnMainThread(Runnable task) {
+        this.plugin.runOnMainThread(task);
+    }
+
+    /**
+     * Submits the IncrementalTask passed to the Plugin's TaskRunner, which
+     * performs it on the main thread a little at a time, within a fixed time
+     * budget per tick. Use this for work proportional to the size of some
+     * data set, which would otherwise freeze the server. Progress is reported
+     * to the CommandSender passed, and the task may be cancelled through the
+     * handle returned.
+     *
+     * @param sender
+     * @param task
+     * @return TaskHandle
+     */
+    public final TaskHandle submitTask(CommandSender sender,
+                                       IncrementalTask task) {
+        return this.plugin.getTaskRunner().submit(this.getName(), task,
+                sender);
+    }
+
     /**
      * The main execution method for this Command.</br>
      * <p/>
@@ -167,6 +348,22 @@ public class Command extends ValidatingPrompt {
                 this.getLocalString("NO_IMPLEMENT"));
     }
 
+    /**
+     * Execution method receiving the arguments as an ArgumentView, which
+     * unlike the array passed to onExecute(CommandSender, String[]) includes
+     * the root command at position 0.</br>
+     * <p/>
+     * </br>By default this method passes the arguments, minus the root, on to
+     * onExecute(CommandSender, String[]) without copying them. Override this
+     * method instead of that one to work with the view directly.
+     *
+     * @param sender
+     * @param args
+     */
+    public void onExecute(CommandSender sender, ArgumentView args) {
+        onExecute(sender, args.getArguments());
+    }
+
     /**
      * Returns the Name of this Command.
      *
@@ -277,6 +474,37 @@ public class Command extends ValidatingPrompt {
         return this.callArgs;
     }
 
+    /**
+     * Declares the types of this Command's variable arguments.</br>
+     * <p/>
+     * </br>The types passed apply, in order, to the <strong>VAR_ARG</strong>
+     * and <strong>VAR_ARG_OPT</strong> positions of the call arguments. Each
+     * argument is converted when the Command is parsed, and a call with an
+     * argument which cannot be converted is rejected with the
+     * <strong>ILL_ARGS_ERR</strong> message before the Command is executed.
+     * The converted values are available from the ArgumentView passed to
+     * onExecute().</br>
+     * <p/>
+     * </br><strong>Ex: </strong><em>{ "ipc", "ban", "VAR_ARG", "VAR_ARG_OPT"
+     * }</em> with <em>setArgumentTypes(ArgumentType.PLAYER,
+     * ArgumentType.DURATION)</em>.
+     *
+     * @param types
+     */
+    public final void setArgumentTypes(ArgumentType... types) {
+        this.argTypes = types;
+    }
+
+    /**
+     * Returns the types declared for this Command's variable arguments, or
+     * null if none were declared.
+     *
+     * @return ArgumentType[]
+     */
+    public final ArgumentType[] getArgumentTypes() {
+        return this.argTypes;
+    }
+
     /**
      * Returns an integer of the number of arguments required for this Command
      * to be identified by the Command Manager.
@@ -292,7 +520,9 @@ public class Command extends ValidatingPrompt {
      * This method checks the CommandSender Object passed against the
      * permissions this Command requires in order to be executed. If the CS
      * Object has all the required permissions, this method will return <strong>
-     * TRUE</strong>, else it will return <strong>FALSE</strong>.
+     * TRUE</strong>, else it will return <strong>FALSE</strong>.</br>
+     * <p/>
+     * </br>Decisions for Players are served from the Plugin's PermissionCache.
      *
      * @param sender
      * @return boolean
@@ -300,6 +530,9 @@ public class Command extends ValidatingPrompt {
     public final boolean canExecute(CommandSender sender) {
         if (this.commandPerms == null || sender.isOp()) return true;
 
+        PermissionCache cache = this.plugin.getPermissionCache();
+        if (cache != null) return cache.hasPermissions(sender, commandPerms);
+
         for (int i = 0; i < this.commandPerms.length; i++) {
             if (!sender.hasPermission(this.commandPerms[i])) return false;
         }
@@ -317,7 +550,7 @@ public class Command extends ValidatingPrompt {
      * @return String
      */
     public final String getLocalString(String key) {
-        return this.LM.getLocalString(key);
+        return this.plugin.getLocalizationManager().getLocalString(key);
     }
 
     /**
@@ -327,6 +560,16 @@ public class Command extends ValidatingPrompt {
         return this.plugin;
     }
 
+    /**
+     * Returns the registered Command this instance was created to serve, or
+     * this instance itself if it is the registered Command.
+     *
+     * @return Command
+     */
+    public final Command getPrototype() {
+        return (this.prototype == null) ? this : this.prototype;
+    }
+
     /**
      * @return
      */
@@ -0,0 +1,155 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.commands;
+
+import org.bukkit.command.CommandSender;
+
+/**
+ * The remainder of a Command's interceptor chain, as passed to each
+ * {@link CommandInterceptor}.</br>
+ * <p/>
+ * </br>Chains are compiled when Commands are registered, and are immutable.
+ * Every chain ends in the same final stage, which constructs a new instance
+ * of the Command and executes it, on the calling thread or through the
+ * AsyncDispatcher.
+ */
+public final class CommandChain {
+
+    private final CommandManager manager;
+    private final CommandInterceptor stage;
+    private final CommandChain next;
+
+    // The final stage
+    CommandChain(final CommandManager manager) {
+        this.manager = manager;
+        this.stage = null;
+        this.next = null;
+    }
+
+    private CommandChain(CommandInterceptor stage, CommandChain next) {
+        this.manager = next.manager;
+        this.stage = stage;
+        this.next = next;
+    }
+
+    /**
+     * Compiles the chain for the Command passed, holding those of the
+     * interceptors passed which apply to it, in order, followed by the final
+     * stage passed.
+     *
+     * @param cmd
+     * @param stages
+     * @param end
+     * @return CommandChain
+     */
+    static CommandChain compile(Command cmd, CommandInterceptor[] stages,
+                                CommandChain end) {
+        CommandChain chain = end;
+
+        for (int i = stages.length - 1; i >= 0; i--) {
+            if (stages[i].appliesTo(cmd)) {
+                chain = new CommandChain(stages[i], chain);
+            }
+        }
+
+        return chain;
+    }
+
+    /**
+     * Passes the call on to the next stage of the chain.
+     *
+     * @param cmd
+     * @param sender
+     * @param args
+     * @return ResultType the outcome of the call; SUCCESS once the Command
+     * has executed, or been handed to the AsyncDispatcher
+     */
+    public ResultType proceed(Command cmd, CommandSender sender,
+                              ArgumentView args) {
+        if (this.stage != null) {
+            return this.stage.intercept(cmd, sender, args, this.next);
+        }
+
+        return this.execute(cmd, sender, args);
+    }
+
+    /**
+     * Returns the number of interceptors left in this chain.
+     *
+     * @return int
+     */
+    public int length() {
+        int length = 0;
+
+        for (CommandChain c = this; c.stage != null; c = c.next) length++;
+
+        return length;
+    }
+
+    private ResultType execute(Command cmd, CommandSender sender,
+                               ArgumentView args) {
+        /*
+         * A new command instance must be created when a command is called,
+         * so as to prevent static commands from being served to players.
+         * This prevents any form of data swappage between two different
+         * players executing the same command at the same time. Commands
+         * annotated as Stateless hold no such data, and are reused.
+         */
+        CommandStatistics stats = this.manager.getStatistics(cmd);
+        long start = System.nanoTime();
+
+        Command instance = this.manager.getCommandFactory().newInstance(cmd);
+
+        if (stats != null) {
+            stats.recordConstruct(System.nanoTime() - start);
+            if (instance == null) stats.recordError();
+        }
+
+        if (instance == null) {
+            cmd.getPlugin().sendPlayerMessage(sender,
+                    cmd.getLocalString("CMD_NULL_ERR"));
+            return ResultType.FAIL;
+        } else if (instance.isAsync()) {
+            if (!this.manager.getAsyncDispatcher().dispatch(instance, sender,
+                    args, this.manager.getCommandFactory())) {
+                return ResultType.FAIL;
+            }
+        } else {
+            try {
+                instance.execute(sender, args);
+            } finally {
+                this.manager.getCommandFactory().release(instance);
+            }
+        }
+
+        return ResultType.SUCCESS;
+    }
+}
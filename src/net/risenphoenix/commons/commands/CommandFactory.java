@@ -0,0 +1,185 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.commands;
+
+import net.risenphoenix.commons.Plugin;
+
+import java.lang.reflect.Constructor;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+/**
+ * Creates the Command instances which serve each call.</br>
+ * <p/>
+ * </br>The constructor of every Command class is resolved once, when a
+ * Command of that class is registered, and is held for the calls which
+ * follow, rather than looking the class and its constructor up again for
+ * every call. Command classes annotated with
+ * {@link Stateless} are never constructed; the registered instance is served
+ * instead. Instances of classes annotated with {@link Pooled} are returned
+ * to a pool kept for their registered Command through release(), and are
+ * served again from there before any new instance is constructed.
+ */
+public class CommandFactory {
+
+    private final Plugin plugin;
+    private final Map<Class<?>, Constructor<? extends Command>> constructors =
+            new ConcurrentHashMap<Class<?>, Constructor<? extends Command>>();
+    private final Set<Class<?>> stateless = Collections.newSetFromMap(
+            new ConcurrentHashMap<Class<?>, Boolean>());
+    private final Map<Class<?>, Integer> pooled =
+            new ConcurrentHashMap<Class<?>, Integer>();
+
+    public CommandFactory(final Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Resolves the constructor for the class of the Command passed. Returns
+     * false if the class is not Stateless and does not declare the public
+     * (Plugin, String[], CommandType) constructor required of all Commands.
+     *
+     * @param cmd
+     * @return boolean
+     */
+    public final boolean register(Command cmd) {
+        Class<? extends Command> clazz = cmd.getClass();
+
+        if (this.stateless.contains(clazz)) return true;
+
+        if (this.constructors.containsKey(clazz)) {
+            this.attachPool(cmd);
+            return true;
+        }
+
+        if (isStateless(clazz)) {
+            this.stateless.add(clazz);
+            return true;
+        }
+
+        try {
+            Constructor<? extends Command> ctor = clazz.getConstructor(
+                    Plugin.class, String[].class, CommandType.class);
+
+            if (clazz.isAnnotationPresent(Pooled.class)) {
+                this.pooled.put(clazz,
+                        clazz.getAnnotation(Pooled.class).value());
+            }
+
+            this.constructors.put(clazz, ctor);
+            this.attachPool(cmd);
+            return true;
+        } catch (Exception e) {
+            this.plugin.sendConsoleMessage(Level.WARNING,
+                    this.plugin.getLocalizationManager()
+                            .getLocalString("CMD_CTOR_ERR") +
+                            clazz.getName());
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the Command instance which should serve a call to the
+     * registered Command passed, or null if no instance could be created.
+     *
+     * @param registered
+     * @return Command
+     */
+    public final Command newInstance(Command registered) {
+        Class<?> clazz = registered.getClass();
+        Constructor<? extends Command> ctor = this.constructors.get(clazz);
+
+        if (ctor == null) {
+            if (this.stateless.contains(clazz)) return registered;
+
+            // Command was not registered through the CommandManager
+            if (!this.register(registered)) return null;
+            return this.newInstance(registered);
+        }
+
+        InstancePool pool = registered.pool;
+
+        if (pool != null) {
+            Command cmd = pool.borrow();
+            if (cmd != null) return cmd;
+        }
+
+        try {
+            Command cmd = ctor.newInstance(this.plugin,
+                    registered.getCallArgs(), registered.getType());
+
+            cmd.prototype = registered;
+            return cmd;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns an instance obtained from newInstance() once its call is
+     * complete. Instances of Pooled Commands are kept for reuse; any other
+     * instance is left to the garbage collector.
+     *
+     * @param cmd
+     */
+    public final void release(Command cmd) {
+        Command registered = cmd.prototype;
+        if (registered == null || registered.pool == null) return;
+
+        try {
+            cmd.onRelease();
+        } catch (RuntimeException e) {
+            return;
+        }
+
+        registered.pool.release(cmd);
+    }
+
+    // Gives the registered Command passed a pool, if its class is Pooled
+    private void attachPool(Command cmd) {
+        Integer size = this.pooled.get(cmd.getClass());
+        if (size == null) return;
+
+        synchronized (cmd) {
+            if (cmd.pool == null) cmd.pool = new InstancePool(size);
+        }
+    }
+
+    public static boolean isStateless(Class<?> clazz) {
+        return clazz.isAnnotationPresent(Stateless.class);
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.commands;
+
+import net.risenphoenix.commons.commands.parsers.CommandMatcher;
+
+import org.bukkit.command.CommandSender;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Case-folded prefix trie over the compiled call arguments of every registered
+ * Command.</br>
+ * <p/>
+ * </br>Each level of the trie corresponds to one argument position. Literal
+ * call arguments are stored in a case-insensitive map, while the
+ * <strong>VAR_ARG</strong> and <strong>VAR_ARG_OPT</strong> wildcards of
+ * Variable and Dynamic Commands are stored as dedicated edges. Static
+ * Commands are always indexed literally, as the Static parser never treated
+ * the wildcard tokens specially.</br>
+ * <p/>
+ * </br>A lookup only visits the nodes reachable from the input, so its cost
+ * is bound by the number of arguments typed rather than by the number of
+ * Commands registered. The trie only selects candidates; the final verdict
+ * for each is given by its {@link CommandMatcher}, which performs no
+ * allocation. Where more than one Command could serve the input, a full match
+ * is preferred over an argument error, and ties are broken by registration
+ * order.
+ */
+public class CommandIndex {
+
+    private final Node root = new Node();
+    private int size = 0;
+
+    public CommandIndex(List<Command> commands) {
+        for (Command cmd : commands) {
+            this.insert(cmd);
+        }
+    }
+
+    // Commands inserted earlier take precedence over those inserted later
+    // when both match equally well.
+    private void insert(Command cmd) {
+        CommandMatcher matcher = CommandMatcher.compile(cmd);
+        Entry entry = new Entry(matcher, this.size++);
+
+        Node node = this.root;
+
+        for (int i = 0; i < matcher.length(); i++) {
+            node = node.child(matcher, i);
+            node.offer(entry);
+        }
+
+        node.terminals.add(entry);
+    }
+
+    /**
+     * Resolves the arguments passed (root command included) against the
+     * index, returning the same ParseResult contract the per-Command parsers
+     * provided.
+     *
+     * @param args
+     * @return ParseResult
+     */
+    public final ParseResult lookup(String[] args) {
+        return this.lookup(ArgumentView.of(args));
+    }
+
+    /**
+     * Resolves the ArgumentView passed against the index.
+     *
+     * @param args
+     * @return ParseResult
+     */
+    public final ParseResult lookup(ArgumentView args) {
+        Match match = new Match();
+        this.walk(this.root, args, 0, match);
+
+        if (match.good != null) {
+            CommandMatcher matcher = match.good.matcher;
+
+            // Convert typed arguments, rejecting the call if any is illegal
+            if (matcher.isTyped()) {
+                Object[] values = new Object[args.size()];
+
+                if (matcher.convert(args, values) >= 0) {
+                    return new ParseResult(ResultType.ILLEGAL_ARGS,
+                            matcher.getCommand());
+                }
+
+                args.bind(values);
+            }
+
+            return new ParseResult(ResultType.SUCCESS, matcher.getCommand());
+        } else if (match.argErr != null) {
+            return new ParseResult(ResultType.BAD_NUM_ARGS,
+                    match.argErr.matcher.getCommand());
+        }
+
+        return new ParseResult(ResultType.FAIL, null);
+    }
+
+    /**
+     * Collects the literal arguments which may follow the input passed (root
+     * command included), where the final element is the partially typed
+     * argument being completed. Only literals leading to at least one Command
+     * the CommandSender can execute are returned.</br>
+     * <p/>
+     * </br>Returns null if no literal applies but a variable argument is
+     * accepted at this position, so that the server may offer its default
+     * completions instead.
+     *
+     * @param input
+     * @param sender
+     * @return List<String>
+     */
+    public final List<String> complete(String[] input, CommandSender sender) {
+        List<String> found = new ArrayList<String>();
+        boolean variable = this.complete(this.root, input, 0, sender, found);
+
+        return (found.isEmpty() && variable) ? null : found;
+    }
+
+    public final int size() {
+        return this.size;
+    }
+
+    private void walk(Node node, ArgumentView args, int depth, Match match) {
+        for (Entry entry : node.terminals) {
+            match.offer(entry.matcher.match(args), entry);
+        }
+
+        if (depth == args.size()) {
+            this.exhausted(node, args, match);
+            return;
+        }
+
+        Node next = node.literals.get(args.get(depth));
+        if (next != null) this.walk(next, args, depth + 1, match);
+
+        if (node.variable != null) {
+            this.walk(node.variable, args, depth + 1, match);
+        }
+
+        if (node.optional != null) {
+            this.walk(node.optional, args, depth + 1, match);
+        }
+    }
+
+    private boolean complete(Node node, String[] input, int depth,
+                             CommandSender sender, List<String> found) {
+        if (depth == input.length - 1) {
+            String partial = input[depth];
+
+            for (Map.Entry<String, Node> child : node.literals
+                    .tailMap(partial).entrySet()) {
+                String literal = child.getKey();
+
+                if (!literal.regionMatches(true, 0, partial, 0,
+                        partial.length())) break;
+
+                if (!found.contains(literal) &&
+                        child.getValue().executableBy(sender)) {
+                    found.add(literal);
+                }
+            }
+
+            return (node.variable != null &&
+                    node.variable.executableBy(sender)) ||
+                    (node.optional != null &&
+                            node.optional.executableBy(sender));
+        }
+
+        boolean variable = false;
+        Node next = node.literals.get(input[depth]);
+
+        if (next != null) {
+            variable = this.complete(next, input, depth + 1, sender, found);
+        }
+
+        if (node.variable != null) {
+            variable |= this.complete(node.variable, input, depth + 1, sender,
+                    found);
+        }
+
+        if (node.optional != null) {
+            variable |= this.complete(node.optional, input, depth + 1, sender,
+                    found);
+        }
+
+        return variable;
+    }
+
+    // The input ran out at this node. Optional arguments may be omitted, a
+    // required argument is an argument error, and a literal cannot match.
+    private void exhausted(Node node, ArgumentView args, Match match) {
+        if (node.variable != null) {
+            Entry first = node.variable.passing.get(0);
+            match.offer(first.matcher.match(args), first);
+        }
+
+        if (node.optional != null) {
+            for (Entry entry : node.optional.terminals) {
+                match.offer(entry.matcher.match(args), entry);
+            }
+
+            this.exhausted(node.optional, args, match);
+        }
+    }
+
+    private static final class Entry {
+        private final CommandMatcher matcher;
+        private final int order;
+
+        private Entry(CommandMatcher matcher, int order) {
+            this.matcher = matcher;
+            this.order = order;
+        }
+    }
+
+    private static final class Node {
+        private final TreeMap<String, Node> literals =
+                new TreeMap<String, Node>(String.CASE_INSENSITIVE_ORDER);
+        private final List<Entry> terminals = new ArrayList<Entry>(1);
+
+        private Node variable = null;
+        private Node optional = null;
+
+        // Every Command passing through this node, in registration order
+        private final List<Entry> passing = new ArrayList<Entry>(1);
+
+        private void offer(Entry entry) {
+            this.passing.add(entry);
+        }
+
+        private boolean executableBy(CommandSender sender) {
+            for (Entry entry : this.passing) {
+                if (entry.matcher.getCommand().canExecute(sender)) return true;
+            }
+
+            return false;
+        }
+
+        private Node child(CommandMatcher matcher, int position) {
+            byte kind = matcher.getKind(position);
+            Node next;
+
+            if (kind == CommandMatcher.VARIABLE) {
+                if (this.variable == null) this.variable = new Node();
+                next = this.variable;
+            } else if (kind == CommandMatcher.OPTIONAL) {
+                if (this.optional == null) this.optional = new Node();
+                next = this.optional;
+            } else {
+                String literal = matcher.getLiteral(position);
+                next = this.literals.get(literal);
+
+                if (next == null) {
+                    next = new Node();
+                    this.literals.put(literal, next);
+                }
+            }
+
+            return next;
+        }
+    }
+
+    private static final class Match {
+        private Entry good = null;
+        private Entry argErr = null;
+
+        private void offer(ComparisonResult result, Entry entry) {
+            if (result == ComparisonResult.GOOD) {
+                if (this.good == null || entry.order < this.good.order) {
+                    this.good = entry;
+                }
+            } else if (result == ComparisonResult.ARG_ERR) {
+                if (this.argErr == null || entry.order < this.argErr.order) {
+                    this.argErr = entry;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.commands;
+
+import org.bukkit.command.CommandSender;
+
+/**
+ * A stage which every call to a Command passes through after it has been
+ * parsed, and before the Command is constructed and executed.</br>
+ * <p/>
+ * </br>Interceptors are registered once with the CommandManager. Whenever
+ * the registered Commands change, the manager compiles one
+ * {@link CommandChain} per Command holding only the interceptors which apply
+ * to it, so an interceptor with nothing to do for a Command costs calls to
+ * that Command nothing.
+ */
+public interface CommandInterceptor {
+
+    /**
+     * Returns whether calls to the Command passed must pass through this
+     * interceptor. Called once per Command each time the chains are
+     * compiled, never per call; the answer may therefore only depend on how
+     * the Command is configured.
+     *
+     * @param cmd
+     * @return boolean
+     */
+    boolean appliesTo(Command cmd);
+
+    /**
+     * Handles a call to the Command passed. The Command is the registered
+     * instance, not the one which will be executed.</br>
+     * <p/>
+     * </br>Call <b>chain.proceed(cmd, sender, args)</b> to pass the call on,
+     * and return what it returns. Returning without doing so stops the call,
+     * in which case the interceptor should tell the CommandSender why, and
+     * return why, such as ResultType.DENIED.
+     *
+     * @param cmd
+     * @param sender
+     * @param args
+     * @param chain
+     * @return ResultType the outcome of the call
+     */
+    ResultType intercept(Command cmd, CommandSender sender, ArgumentView args,
+                   CommandChain chain);
+}
@@ -31,32 +31,75 @@
 package net.risenphoenix.commons.commands;
 
 import net.risenphoenix.commons.Plugin;
-import net.risenphoenix.commons.commands.parsers.DynamicParser;
-import net.risenphoenix.commons.commands.parsers.Parser;
-import net.risenphoenix.commons.commands.parsers.StaticParser;
-import net.risenphoenix.commons.commands.parsers.VariableParser;
+import net.risenphoenix.commons.commands.interceptors.ConsoleInterceptor;
+import net.risenphoenix.commons.commands.interceptors.PermissionInterceptor;
+import net.risenphoenix.commons.commands.interceptors.ThrottleInterceptor;
 import net.risenphoenix.commons.stores.CommandStore;
+import org.bukkit.command.CommandSender;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 
 public class CommandManager {
 
     private final Plugin plugin;
-    private ArrayList<Command> commands = new ArrayList<Command>();
+    private volatile CommandRegistry registry;
+    private CommandInterceptor[] interceptors;
+    private final CommandFactory factory;
+    private final AsyncDispatcher dispatcher;
+    private final CompletionService completion;
+    private final HelpRenderer help;
+    private final CommandThrottle throttle = new CommandThrottle();
+    private final ConcurrentMap<Command, CommandStatistics> statistics =
+            new ConcurrentHashMap<Command, CommandStatistics>();
 
-    private boolean debugMode = false;
+    private final ParseTracer tracer = new ParseTracer();
 
     public CommandManager(final Plugin plugin) {
         this.plugin = plugin;
+        this.factory = new CommandFactory(plugin);
+        this.dispatcher = new AsyncDispatcher(plugin);
+        this.completion = new CompletionService(this);
+        this.help = new HelpRenderer(this);
+
+        this.interceptors = new CommandInterceptor[]{
+                new ConsoleInterceptor(),
+                new PermissionInterceptor(),
+                new ThrottleInterceptor(this.throttle)
+        };
+
+        this.registry = new CommandRegistry(this, new ArrayList<Command>(),
+                this.interceptors);
     }
 
-    public final void registerStore(CommandStore cmdStore) {
-        this.commands = cmdStore.getCommands();
+    public final synchronized void registerStore(CommandStore cmdStore) {
+        CommandRegistry next = new CommandRegistry(this,
+                cmdStore.getCommands(), this.interceptors);
+
+        for (Command cmd : next.getCommands()) {
+            this.factory.register(cmd);
+            this.statistics.putIfAbsent(cmd, new CommandStatistics(cmd));
+        }
+
+        this.statistics.keySet().retainAll(next.getCommands());
+        this.registry = next;
     }
 
-    public final boolean registerCommand(Command cmd) {
-        if (this.commands.add(cmd)) {
+    public final synchronized boolean registerCommand(Command cmd) {
+        List<Command> next =
+                new ArrayList<Command>(this.registry.getCommands());
+
+        if (next.add(cmd)) {
+            this.factory.register(cmd);
+            this.statistics.putIfAbsent(cmd, new CommandStatistics(cmd));
+            this.registry = new CommandRegistry(this, next,
+                    this.interceptors);
             return true;
         } else {
             plugin.sendConsoleMessage(Level.WARNING,
@@ -68,53 +111,212 @@ public class CommandManager {
         }
     }
 
+    /**
+     * Registers the Commands passed, in order, after those already
+     * registered. One registry snapshot is built for all of them, whereas
+     * each call to registerCommand() rebuilds the snapshot, indexes
+     * included; use this method to register many Commands at once.
+     *
+     * @param cmds
+     */
+    public final synchronized void registerCommands(
+            Collection<? extends Command> cmds) {
+        List<Command> next = new ArrayList<Command>(
+                this.registry.size() + cmds.size());
+        next.addAll(this.registry.getCommands());
+
+        for (Command cmd : cmds) {
+            if (cmd == null) continue;
+
+            next.add(cmd);
+            this.factory.register(cmd);
+            this.statistics.putIfAbsent(cmd, new CommandStatistics(cmd));
+        }
+
+        this.registry = new CommandRegistry(this, next, this.interceptors);
+    }
+
+    /**
+     * Adds the CommandInterceptor passed to the end of the chain every call
+     * passes through. The library registers interceptors enforcing console
+     * restrictions, permissions, and cooldowns and rate limits, in that
+     * order, ahead of any registered by the plugin.</br>
+     * <p/>
+     * </br>The chains of all registered Commands are recompiled, so
+     * interceptors should be registered before Commands where possible.
+     *
+     * @param interceptor
+     */
+    public final synchronized void registerInterceptor(
+            CommandInterceptor interceptor) {
+        CommandInterceptor[] next = Arrays.copyOf(this.interceptors,
+                this.interceptors.length + 1);
+        next[next.length - 1] = interceptor;
+
+        this.interceptors = next;
+        this.registry = new CommandRegistry(this,
+                this.registry.getCommands(), next);
+    }
+
+    /**
+     * Passes a call to the registered Command passed through its interceptor
+     * chain, which ends by constructing a new instance of the Command and
+     * executing it.
+     *
+     * @param cmd
+     * @param sender
+     * @param args
+     * @return ResultType the outcome of the call, such as DENIED or
+     * THROTTLED if a stage of the chain stopped it
+     */
+    public final ResultType dispatch(Command cmd, CommandSender sender,
+                                     ArgumentView args) {
+        return this.registry.getChain(cmd).proceed(cmd, sender, args);
+    }
+
     public final Command getCommand(String identifier) {
-        for (Command cmd : this.commands) {
+        for (Command cmd : this.registry.getCommands()) {
             if (cmd.getName().equalsIgnoreCase(identifier)) return cmd;
         }
 
         return null;
     }
 
+    /**
+     * Returns a copy of the registered Commands. Use getRegistry() to iterate
+     * the Commands without copying them.
+     *
+     * @return ArrayList<Command>
+     */
     public final ArrayList<Command> getAllCommands() {
-        return this.commands;
+        return new ArrayList<Command>(this.registry.getCommands());
+    }
+
+    /**
+     * Returns the current snapshot of the registered Commands. The snapshot
+     * never changes; later registrations replace it with a new one.
+     *
+     * @return CommandRegistry
+     */
+    public final CommandRegistry getRegistry() {
+        return this.registry;
     }
 
     public final ParseResult parseCommand(String[] args) {
-        for (Command cmd : this.commands) {
-            Parser parser;
-
-            if (cmd.getType() == CommandType.STATIC) {
-                parser = new StaticParser(this, cmd, args);
-            } else if (cmd.getType() == CommandType.VARIABLE) {
-                parser = new VariableParser(this, cmd, args);
-            } else if (cmd.getType() == CommandType.DYNAMIC) {
-                parser = new DynamicParser(this, cmd, args);
-            } else {
-                parser = new StaticParser(this, cmd, args);
-            }
-
-            ComparisonResult result = parser.parseCommand();
-
-            if (result.equals(ComparisonResult.GOOD)) {
-                return new ParseResult(ResultType.SUCCESS, cmd);
-            } else if (result.equals(ComparisonResult.ARG_ERR)) {
-                return new ParseResult(ResultType.BAD_NUM_ARGS, cmd);
-            }
+        return this.parseCommand(ArgumentView.of(args));
+    }
+
+    public final ParseResult parseCommand(ArgumentView args) {
+        return this.parseCommand(args, null);
+    }
+
+    /**
+     * Parses the arguments passed on behalf of the CommandSender passed,
+     * which is only used to attribute the parse when tracing is enabled.
+     *
+     * @param args
+     * @param sender may be null
+     * @return ParseResult
+     */
+    public final ParseResult parseCommand(ArgumentView args,
+                                          CommandSender sender) {
+        if (!this.tracer.isEnabled()) {
+            return this.registry.getIndex().lookup(args);
         }
 
-        return new ParseResult(ResultType.FAIL, null);
+        long start = System.nanoTime();
+        ParseResult result = this.registry.getIndex().lookup(args);
+        this.tracer.record(sender, args, result, System.nanoTime() - start);
+
+        return result;
+    }
+
+    public final CommandFactory getCommandFactory() {
+        return this.factory;
+    }
+
+    /**
+     * Returns the latency statistics recorded for the registered Command
+     * passed, or null if the Command is not registered.
+     *
+     * @param cmd
+     * @return CommandStatistics
+     */
+    public final CommandStatistics getStatistics(Command cmd) {
+        return this.statistics.get(cmd);
+    }
+
+    public final Collection<CommandStatistics> getAllStatistics() {
+        return Collections.unmodifiableCollection(this.statistics.values());
+    }
+
+    public final void resetStatistics() {
+        for (CommandStatistics stats : this.statistics.values()) {
+            stats.reset();
+        }
+    }
+
+    /**
+     * Returns up to three Command paths close to the unmatched input passed,
+     * nearest first, leading to Commands the CommandSender can execute.
+     *
+     * @param args
+     * @param sender
+     * @return List<String>
+     */
+    public final List<String> getSuggestions(ArgumentView args,
+                                             CommandSender sender) {
+        return this.registry.getSuggestionIndex().suggest(args, sender, 3);
+    }
+
+    public final CommandThrottle getThrottle() {
+        return this.throttle;
+    }
+
+    public final CompletionService getCompletionService() {
+        return this.completion;
+    }
+
+    public final HelpRenderer getHelpRenderer() {
+        return this.help;
+    }
+
+    public final AsyncDispatcher getAsyncDispatcher() {
+        return this.dispatcher;
     }
 
     public Plugin getPlugin() {
         return this.plugin;
     }
 
+    /**
+     * Returns the tracer recording the decisions of this manager's parser.
+     *
+     * @return ParseTracer
+     */
+    public final ParseTracer getTracer() {
+        return this.tracer;
+    }
+
+    /**
+     * @deprecated Parse decisions are no longer printed to the console. Use
+     * getTracer() to record them instead; this method now enables or
+     * disables tracing of all calls.
+     */
+    @Deprecated
     public void setDebugMode(boolean flag) {
-        this.debugMode = flag;
+        if (flag) {
+            this.tracer.enable();
+        } else {
+            this.tracer.disable();
+        }
     }
 
+    /**
+     * @deprecated Use getTracer().isEnabled().
+     */
+    @Deprecated
     public boolean debugMode() {
-        return this.debugMode;
+        return this.tracer.isEnabled();
     }
 }
@@ -0,0 +1,182 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.commands;
+
+import net.risenphoenix.commons.util.PermissionCache;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.permissions.Permission;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the Commands registered with a CommandManager,
+ * together with the indexes and interceptor chains built over them.</br>
+ * <p/>
+ * </br>A snapshot is never modified once built. Every registration builds a
+ * new snapshot, fully indexed, and swaps it in as a whole, so a thread
+ * parsing a command always sees a consistent registry without taking a lock,
+ * even while Commands are being registered on another thread.
+ */
+public final class CommandRegistry {
+
+    private final List<Command> commands;
+    private final CommandIndex index;
+    private final SuggestionIndex suggestions;
+    private final CommandInterceptor[] interceptors;
+    private final CommandChain end;
+    private final Map<Command, CommandChain> chains;
+
+    private volatile Permission[] permissions = null;
+
+    CommandRegistry(final CommandManager manager, List<Command> commands,
+                    CommandInterceptor[] interceptors) {
+        List<Command> copy = new ArrayList<Command>(commands);
+
+        this.commands = Collections.unmodifiableList(copy);
+        this.index = new CommandIndex(copy);
+        this.suggestions = new SuggestionIndex(copy);
+        this.interceptors = interceptors.clone();
+        this.end = new CommandChain(manager);
+        this.chains = new IdentityHashMap<Command, CommandChain>(copy.size());
+
+        for (Command cmd : copy) {
+            this.chains.put(cmd, CommandChain.compile(cmd, this.interceptors,
+                    this.end));
+        }
+    }
+
+    /**
+     * Returns the registered Commands, in registration order. The list may
+     * not be modified.
+     *
+     * @return List<Command>
+     */
+    public List<Command> getCommands() {
+        return this.commands;
+    }
+
+    public CommandIndex getIndex() {
+        return this.index;
+    }
+
+    public SuggestionIndex getSuggestionIndex() {
+        return this.suggestions;
+    }
+
+    /**
+     * Returns the interceptor chain compiled for the Command passed. Commands
+     * which are not part of this snapshot have their chain compiled on
+     * demand.
+     *
+     * @param cmd
+     * @return CommandChain
+     */
+    public CommandChain getChain(Command cmd) {
+        CommandChain chain = this.chains.get(cmd);
+
+        return (chain != null) ? chain :
+                CommandChain.compile(cmd, this.interceptors, this.end);
+    }
+
+    /**
+     * Returns the interceptors every call passes through, in order, before
+     * each is filtered per Command.
+     *
+     * @return List<CommandInterceptor>
+     */
+    public List<CommandInterceptor> getInterceptors() {
+        return Collections.unmodifiableList(
+                Arrays.asList(this.interceptors));
+    }
+
+    /**
+     * Returns the permission profile of the CommandSender passed: a key
+     * recording which of the permissions used by the registered Commands the
+     * CommandSender holds, and whether it is a Player. CommandSenders with
+     * the same profile can execute the same Commands, so results which only
+     * depend on that may be cached per profile.
+     *
+     * @param sender
+     * @param cache may be null
+     * @return String
+     */
+    String getProfile(CommandSender sender, PermissionCache cache) {
+        char kind = (sender instanceof Player) ? 'P' : 'C';
+        if (sender.isOp()) return kind + "op";
+
+        Permission[] perms = this.getPermissions();
+        char[] profile = new char[perms.length + 1];
+        profile[0] = kind;
+
+        for (int i = 0; i < perms.length; i++) {
+            boolean held = (cache != null) ?
+                    cache.hasPermission(sender, perms[i]) :
+                    sender.hasPermission(perms[i]);
+            profile[i + 1] = held ? '1' : '0';
+        }
+
+        return new String(profile);
+    }
+
+    // Distinct permissions used by the registered Commands
+    private Permission[] getPermissions() {
+        Permission[] perms = this.permissions;
+        if (perms != null) return perms;
+
+        Map<String, Permission> distinct =
+                new LinkedHashMap<String, Permission>();
+
+        for (Command cmd : this.commands) {
+            if (cmd.getPermissions() == null) continue;
+
+            for (Permission perm : cmd.getPermissions()) {
+                if (!distinct.containsKey(perm.getName())) {
+                    distinct.put(perm.getName(), perm);
+                }
+            }
+        }
+
+        perms = distinct.values().toArray(new Permission[distinct.size()]);
+        this.permissions = perms;
+        return perms;
+    }
+
+    public int size() {
+        return this.commands.size();
+    }
+}
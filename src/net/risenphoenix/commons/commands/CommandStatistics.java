@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.commands;
+
+import net.risenphoenix.commons.util.LatencyHistogram;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency and error counters for a single registered Command.</br>
+ * <p/>
+ * </br>Parse, construction and execution times are recorded separately, so
+ * that the cost of resolving a Command can be told apart from the cost of
+ * the Command itself. All counters are lock-free and of fixed size.
+ */
+public final class CommandStatistics {
+
+    private final Command cmd;
+
+    private final LatencyHistogram parse = new LatencyHistogram();
+    private final LatencyHistogram construct = new LatencyHistogram();
+    private final LatencyHistogram execute = new LatencyHistogram();
+    private final AtomicLong errors = new AtomicLong();
+
+    public CommandStatistics(final Command cmd) {
+        this.cmd = cmd;
+    }
+
+    public void recordParse(long nanos) {
+        this.parse.record(nanos);
+    }
+
+    public void recordConstruct(long nanos) {
+        this.construct.record(nanos);
+    }
+
+    public void recordExecute(long nanos) {
+        this.execute.record(nanos);
+    }
+
+    public void recordError() {
+        this.errors.incrementAndGet();
+    }
+
+    public Command getCommand() {
+        return this.cmd;
+    }
+
+    public LatencyHistogram getParseTimes() {
+        return this.parse;
+    }
+
+    public LatencyHistogram getConstructTimes() {
+        return this.construct;
+    }
+
+    public LatencyHistogram getExecuteTimes() {
+        return this.execute;
+    }
+
+    public long getErrorCount() {
+        return this.errors.get();
+    }
+
+    public void reset() {
+        this.parse.reset();
+        this.construct.reset();
+        this.execute.reset();
+        this.errors.set(0);
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.commands;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Enforces the cooldowns and rate limits declared by Commands, per Player
+ * and per registered Command.</br>
+ * <p/>
+ * </br>Rate limits are token buckets expressed as a theoretical arrival
+ * time (the generic cell rate algorithm), so each Player's state for a
+ * Command is a single immutable value swapped with compare-and-set. No lock
+ * is taken on any path. State which can no longer affect a future call is
+ * swept periodically, so Players who log out leave nothing behind once their
+ * cooldowns have elapsed, while Players who log back in straight away cannot
+ * use a reconnect to skip a cooldown.</br>
+ * <p/>
+ * </br>Calls are charged by the ThrottleInterceptor in each throttled
+ * Command's chain, which reports a call it stops as ResultType.THROTTLED.
+ */
+public class CommandThrottle {
+
+    private static final long SWEEP_INTERVAL = 60000000000L;
+
+    private final ConcurrentMap<UUID, Sender> senders =
+            new ConcurrentHashMap<UUID, Sender>();
+    private final AtomicLong lastSweep = new AtomicLong(System.nanoTime());
+
+    /**
+     * Attempts to charge one call of the Command passed to the Player with
+     * the UUID passed. Returns 0 if the call is allowed, or the number of
+     * milliseconds to wait before it would be.
+     *
+     * @param id
+     * @param cmd
+     * @return long
+     */
+    public final long acquire(UUID id, Command cmd) {
+        long now = System.nanoTime();
+        this.sweep(now);
+
+        // Kept in nanoseconds, so that a limit of more calls than its
+        // period has milliseconds still spaces them
+        AtomicReference<State> ref = this.getState(id, cmd);
+        long cooldown = cmd.getCooldown() * 1000000L;
+        long period = cmd.getRateLimitPeriod() * 1000000L;
+        long interval = (cmd.getRateLimitPermits() > 0) ?
+                Math.max(1, period / cmd.getRateLimitPermits()) : 0;
+        long tolerance = period - interval;
+
+        while (true) {
+            State current = ref.get();
+
+            // Swept since it was fetched; start again from a live state
+            if (current == State.RETIRED) {
+                ref = this.getState(id, cmd);
+                continue;
+            }
+
+            // Times are compared by difference, as System.nanoTime() may
+            // be negative; IDLE has none to compare
+            long arrival = now;
+
+            if (current != State.IDLE) {
+                if (current.cooldownUntil - now > 0) {
+                    return toMillis(current.cooldownUntil - now);
+                }
+
+                if (current.arrival - now > 0) arrival = current.arrival;
+            }
+
+            if (interval > 0 && arrival - now > tolerance) {
+                return toMillis(arrival - now - tolerance);
+            }
+
+            State next = new State(now + cooldown, arrival + interval);
+            if (ref.compareAndSet(current, next)) return 0;
+        }
+    }
+
+    /**
+     * Forgets all cooldowns and rate limits for the Player passed.
+     *
+     * @param id
+     */
+    public final void reset(UUID id) {
+        this.senders.remove(id);
+    }
+
+    public final void clear() {
+        this.senders.clear();
+    }
+
+    public final int size() {
+        return this.senders.size();
+    }
+
+    public static boolean isThrottled(Command cmd) {
+        return cmd.getCooldown() > 0 || cmd.getRateLimitPermits() > 0;
+    }
+
+    private AtomicReference<State> getState(UUID id, Command cmd) {
+        while (true) {
+            Sender sender = this.senders.get(id);
+
+            if (sender == null) {
+                Sender created = new Sender();
+                sender = this.senders.putIfAbsent(id, created);
+                if (sender == null) sender = created;
+            }
+
+            AtomicReference<State> ref = sender.states.get(cmd);
+
+            if (ref == null) {
+                AtomicReference<State> created =
+                        new AtomicReference<State>(State.IDLE);
+                ref = sender.states.putIfAbsent(cmd, created);
+                if (ref == null) ref = created;
+            }
+
+            // Read after the state is added; the sweep reads the states
+            // after retiring the Sender, so one of the two sees the other
+            if (!sender.retired) return ref;
+        }
+    }
+
+    // Removes state which no longer restricts any call. Only one thread
+    // sweeps at a time; the others carry on without waiting.
+    private void sweep(long now) {
+        long last = this.lastSweep.get();
+        if (now - last < SWEEP_INTERVAL ||
+                !this.lastSweep.compareAndSet(last, now)) return;
+
+        Iterator<Map.Entry<UUID, Sender>> senders =
+                this.senders.entrySet().iterator();
+
+        while (senders.hasNext()) {
+            Map.Entry<UUID, Sender> entry = senders.next();
+            Sender sender = entry.getValue();
+
+            for (Map.Entry<Command, AtomicReference<State>> ref :
+                    sender.states.entrySet()) {
+                State state = ref.getValue().get();
+
+                // Retired first, so that a call which fetched the state
+                // concurrently fails its compare-and-set and fetches again
+                if (state != State.RETIRED && (state == State.IDLE ||
+                        (state.cooldownUntil - now <= 0 &&
+                                state.arrival - now <= 0)) &&
+                        ref.getValue().compareAndSet(state, State.RETIRED)) {
+                    sender.states.remove(ref.getKey(), ref.getValue());
+                }
+            }
+
+            if (!sender.states.isEmpty()) continue;
+
+            // A call adding state meanwhile either sees the Sender retired
+            // and fetches it again, or is seen here and keeps it
+            sender.retired = true;
+
+            if (sender.states.isEmpty()) {
+                this.senders.remove(entry.getKey(), sender);
+            } else {
+                sender.retired = false;
+            }
+        }
+    }
+
+    // Rounds up, so that a call retried after the wait is allowed
+    private static long toMillis(long nanos) {
+        return (nanos + 999999L) / 1000000L;
+    }
+
+    private static final class Sender {
+        private final ConcurrentMap<Command, AtomicReference<State>> states =
+                new ConcurrentHashMap<Command, AtomicReference<State>>(4);
+        private volatile boolean retired = false;
+    }
+
+    private static final class State {
+        private static final State IDLE = new State(Long.MIN_VALUE,
+                Long.MIN_VALUE);
+        private static final State RETIRED = new State(Long.MIN_VALUE,
+                Long.MIN_VALUE);
+
+        private final long cooldownUntil;
+        private final long arrival;
+
+        private State(long cooldownUntil, long arrival) {
+            this.cooldownUntil = cooldownUntil;
+            this.arrival = arrival;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.commands;
+
+import org.bukkit.command.CommandSender;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Provides tab-completion for the Commands registered with a
+ * CommandManager.</br>
+ * <p/>
+ * </br>Completions are found by walking the CommandManager's index with the
+ * arguments typed so far, and are filtered to those leading to a Command the
+ * CommandSender can execute. The result is cached per typed prefix and per
+ * permission profile, where the profile records which of the permissions
+ * used by the registered Commands the CommandSender holds. Players sharing a
+ * rank therefore share cached completions. The cache is dropped whenever the
+ * CommandManager's registry snapshot is replaced.
+ */
+public class CompletionService {
+
+    private static final int MAX_CACHED = 4096;
+    private static final List<String> DEFAULT = Collections.emptyList();
+
+    private final CommandManager manager;
+    private final Map<String, List<String>> cache =
+            new ConcurrentHashMap<String, List<String>>();
+
+    private volatile CommandRegistry cachedFor = null;
+
+    public CompletionService(final CommandManager manager) {
+        this.manager = manager;
+    }
+
+    /**
+     * Returns the completions for the arguments passed (root command
+     * included), where the final element is the partially typed argument.
+     * Returns null where the server's default completions should be used.
+     *
+     * @param sender
+     * @param args
+     * @return List<String>
+     */
+    public final List<String> complete(CommandSender sender, String[] args) {
+        CommandRegistry registry = this.manager.getRegistry();
+
+        if (registry != this.cachedFor) {
+            this.invalidate();
+            this.cachedFor = registry;
+        }
+
+        String key = registry.getProfile(sender, this.manager.getPlugin()
+                .getPermissionCache()) + '\u0000' + join(args);
+        List<String> found = this.cache.get(key);
+
+        if (found == null) {
+            found = registry.getIndex().complete(args, sender);
+            if (found == null) found = DEFAULT;
+
+            if (this.cache.size() >= MAX_CACHED) this.cache.clear();
+            this.cache.put(key, found);
+        }
+
+        // The server may sort or filter the list it is handed
+        return (found == DEFAULT) ? null : new ArrayList<String>(found);
+    }
+
+    /**
+     * Drops all cached completions.
+     */
+    public final void invalidate() {
+        this.cache.clear();
+    }
+
+    private static String join(String[] args) {
+        StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < args.length; i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(args[i].toLowerCase(Locale.ENGLISH));
+        }
+
+        return sb.toString();
+    }
+}
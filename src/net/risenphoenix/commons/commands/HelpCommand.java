@@ -0,0 +1,66 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.commands;
+
+import net.risenphoenix.commons.Plugin;
+import org.bukkit.command.CommandSender;
+
+/**
+ * Built-in Command which displays paginated help for the Commands the
+ * CommandSender can execute, as rendered by the CommandManager's
+ * {@link HelpRenderer}. A page number may follow the call arguments.</br>
+ * <p/>
+ * </br>The Command is registered like any other, with whatever call
+ * arguments and permissions the plugin chooses:
+ * <ul><li><em>Command help = new HelpCommand(plugin, new String[]{ "ipc",
+ * "help", "VAR_ARG_OPT" }, CommandType.VARIABLE);<br>
+ * getCommandManager().registerCommand(help);</em></li></ul>
+ */
+@Stateless
+public class HelpCommand extends Command {
+
+    public HelpCommand(final Plugin plugin, String[] callArgs,
+                       CommandType type) {
+        super(plugin, callArgs, type);
+        setName("Help");
+        setHelp("Lists the commands available to you.");
+        setSyntax("help [page]");
+    }
+
+    @Override
+    public void onExecute(CommandSender sender, ArgumentView args) {
+        // The page number, if given, is the final argument
+        int page = (args.size() > getCallArgs().length - 1) ?
+                args.getInt(args.size() - 1, 1) : 1;
+
+        getPlugin().getCommandManager().getHelpRenderer().render(sender, page);
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.commands;
+
+import net.risenphoenix.commons.localization.LocalizationManager;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Renders paginated help for the Commands registered with a
+ * CommandManager, listing only those the CommandSender can execute.</br>
+ * <p/>
+ * </br>Pages are formatted once per permission profile, where the profile
+ * records which of the permissions used by the registered Commands the
+ * CommandSender holds, and are then served from a cache. The cache is
+ * dropped when the registry snapshot is replaced or a translation changes.
+ */
+public class HelpRenderer {
+
+    private static final int DEFAULT_PAGE_SIZE = 8;
+    private static final int MAX_CACHED = 256;
+
+    private final CommandManager manager;
+    private final Map<String, String[][]> cache =
+            new ConcurrentHashMap<String, String[][]>();
+
+    private volatile CommandRegistry cachedFor = null;
+    private volatile int cachedVersion = -1;
+    private volatile int pageSize = DEFAULT_PAGE_SIZE;
+
+    public HelpRenderer(final CommandManager manager) {
+        this.manager = manager;
+    }
+
+    /**
+     * Sends the page of help passed, numbered from 1, to the CommandSender
+     * passed.
+     *
+     * @param sender
+     * @param page
+     */
+    public final void render(CommandSender sender, int page) {
+        LocalizationManager lm = this.manager.getPlugin()
+                .getLocalizationManager();
+        String[][] pages = this.getPages(sender);
+
+        if (pages.length == 0) {
+            this.manager.getPlugin().sendPlayerMessage(sender,
+                    lm.getLocalString("HELP_NONE"));
+        } else if (page < 1 || page > pages.length) {
+            this.manager.getPlugin().sendPlayerMessage(sender,
+                    lm.getLocalString("HELP_NO_PAGE") + pages.length);
+        } else {
+            String[] lines = pages[page - 1];
+
+            // The header carries the plugin name; entries do not
+            this.manager.getPlugin().sendPlayerMessage(sender, lines[0]);
+            sender.sendMessage(Arrays.copyOfRange(lines, 1, lines.length));
+        }
+    }
+
+    /**
+     * Returns the lines of the page of help passed, numbered from 1, header
+     * included, or null if there is no such page.
+     *
+     * @param sender
+     * @param page
+     * @return List<String>
+     */
+    public final List<String> getPage(CommandSender sender, int page) {
+        String[][] pages = this.getPages(sender);
+        if (page < 1 || page > pages.length) return null;
+
+        List<String> lines = new ArrayList<String>(pages[page - 1].length);
+        for (String line : pages[page - 1]) lines.add(line);
+
+        return lines;
+    }
+
+    public final int getPageCount(CommandSender sender) {
+        return this.getPages(sender).length;
+    }
+
+    /**
+     * Sets the number of Commands listed on each page.
+     *
+     * @param pageSize
+     */
+    public final void setPageSize(int pageSize) {
+        this.pageSize = Math.max(1, pageSize);
+        this.invalidate();
+    }
+
+    public final int getPageSize() {
+        return this.pageSize;
+    }
+
+    /**
+     * Drops all cached pages.
+     */
+    public final void invalidate() {
+        this.cache.clear();
+    }
+
+    private String[][] getPages(CommandSender sender) {
+        CommandRegistry registry = this.manager.getRegistry();
+        LocalizationManager lm = this.manager.getPlugin()
+                .getLocalizationManager();
+        int version = lm.getVersion();
+
+        if (registry != this.cachedFor || version != this.cachedVersion) {
+            this.invalidate();
+            this.cachedFor = registry;
+            this.cachedVersion = version;
+        }
+
+        String key = registry.getProfile(sender, this.manager.getPlugin()
+                .getPermissionCache());
+        String[][] pages = this.cache.get(key);
+
+        if (pages == null) {
+            pages = this.format(registry, sender, lm);
+
+            if (this.cache.size() >= MAX_CACHED) this.cache.clear();
+            this.cache.put(key, pages);
+        }
+
+        return pages;
+    }
+
+    // Formats every page visible to the CommandSender passed
+    private String[][] format(CommandRegistry registry, CommandSender sender,
+                              LocalizationManager lm) {
+        List<String> entries = new ArrayList<String>();
+
+        for (Command cmd : registry.getCommands()) {
+            if (!cmd.canExecute(sender)) continue;
+            if (!(sender instanceof Player) && !cmd.canConsoleExecute()) {
+                continue;
+            }
+
+            entries.add(formatEntry(cmd));
+        }
+
+        int size = this.pageSize;
+        int count = (entries.size() + size - 1) / size;
+        String[][] pages = new String[count][];
+
+        for (int p = 0; p < count; p++) {
+            int from = p * size;
+            int to = Math.min(entries.size(), from + size);
+            String[] lines = new String[to - from + 1];
+
+            lines[0] = lm.getLocalString("HELP_HDR") + (p + 1) + "/" + count;
+
+            for (int i = from; i < to; i++) {
+                lines[i - from + 1] = entries.get(i);
+            }
+
+            pages[p] = lines;
+        }
+
+        return pages;
+    }
+
+    private static String formatEntry(Command cmd) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(ChatColor.GOLD).append('/');
+
+        if (cmd.getSyntax() != null) {
+            String root = cmd.getCallArgs()[0];
+
+            // Syntax is usually given without the root command
+            if (!cmd.getSyntax().toLowerCase(Locale.ENGLISH).startsWith(
+                    root.toLowerCase(Locale.ENGLISH) + " ")) {
+                sb.append(root).append(' ');
+            }
+
+            sb.append(cmd.getSyntax());
+        } else {
+            for (int i = 0; i < cmd.getCallArgs().length; i++) {
+                if (i > 0) sb.append(' ');
+                sb.append(cmd.getCallArgs()[i]);
+            }
+        }
+
+        if (cmd.getHelp() != null) {
+            sb.append(ChatColor.WHITE).append(" - ").append(cmd.getHelp());
+        }
+
+        return sb.toString();
+    }
+}
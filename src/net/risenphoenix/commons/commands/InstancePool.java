@@ -0,0 +1,82 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.commands;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Idle instances of a Pooled Command, kept in a fixed array of slots which
+ * are claimed and filled with compare-and-set. Neither borrowing nor
+ * releasing an instance allocates or takes a lock.
+ */
+final class InstancePool {
+
+    private final AtomicReferenceArray<Command> slots;
+
+    InstancePool(int size) {
+        this.slots = new AtomicReferenceArray<Command>(Math.max(1, size));
+    }
+
+    // Returns an idle instance, or null if there is none
+    Command borrow() {
+        for (int i = 0; i < this.slots.length(); i++) {
+            Command cmd = this.slots.get(i);
+
+            if (cmd != null && this.slots.compareAndSet(i, cmd, null)) {
+                return cmd;
+            }
+        }
+
+        return null;
+    }
+
+    // Keeps the instance passed, unless every slot is already filled
+    boolean release(Command cmd) {
+        for (int i = 0; i < this.slots.length(); i++) {
+            if (this.slots.get(i) == null &&
+                    this.slots.compareAndSet(i, null, cmd)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    int size() {
+        int size = 0;
+
+        for (int i = 0; i < this.slots.length(); i++) {
+            if (this.slots.get(i) != null) size++;
+        }
+
+        return size;
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.commands;
+
+import org.bukkit.command.CommandSender;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Records the decisions made by the CommandManager's parser into a bounded,
+ * in-memory ring buffer, so that mis-routed commands can be investigated on
+ * a live server without writing to the console.</br>
+ * <p/>
+ * </br>Tracing is off by default. While it is off, parsing pays for a single
+ * field read and nothing is recorded or allocated. Tracing may be limited to
+ * the calls of one CommandSender. Once the buffer is full, the oldest
+ * entries are overwritten.
+ */
+public class ParseTracer {
+
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private final AtomicReferenceArray<Entry> entries;
+    private final AtomicLong next = new AtomicLong(0);
+
+    private volatile boolean enabled = false;
+    private volatile String senderFilter = null;
+
+    public ParseTracer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ParseTracer(int capacity) {
+        this.entries = new AtomicReferenceArray<Entry>(Math.max(1, capacity));
+    }
+
+    /**
+     * Starts recording the calls of every CommandSender, including calls
+     * parsed without one.
+     */
+    public final void enable() {
+        this.senderFilter = null;
+        this.enabled = true;
+    }
+
+    /**
+     * Starts recording only the calls of the CommandSender with the name
+     * passed.
+     *
+     * @param senderName
+     */
+    public final void enable(String senderName) {
+        this.senderFilter = senderName;
+        this.enabled = true;
+    }
+
+    /**
+     * Stops recording. Entries already recorded are kept.
+     */
+    public final void disable() {
+        this.enabled = false;
+    }
+
+    public final boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Returns the name of the CommandSender being traced, or null if all
+     * calls are traced.
+     *
+     * @return String
+     */
+    public final String getSenderFilter() {
+        return this.senderFilter;
+    }
+
+    /**
+     * Records the outcome of a parse. Only called while tracing is enabled.
+     *
+     * @param sender may be null
+     * @param input
+     * @param result
+     * @param nanos time taken to parse
+     */
+    final void record(CommandSender sender, ArgumentView input,
+                      ParseResult result, long nanos) {
+        String name = (sender == null) ? null : sender.getName();
+        String filter = this.senderFilter;
+
+        if (filter != null && !filter.equalsIgnoreCase(name)) return;
+
+        Command cmd = result.getCommand();
+        Entry entry = new Entry(System.currentTimeMillis(), name,
+                input.toString(), result.getResult(),
+                (cmd == null) ? null : cmd.getCallArgs(), nanos);
+
+        long seq = this.next.getAndIncrement();
+        this.entries.set((int) (seq % this.entries.length()), entry);
+    }
+
+    /**
+     * Returns up to the number of most recent entries passed, oldest first.
+     *
+     * @param max
+     * @return List<Entry>
+     */
+    public final List<Entry> getEntries(int max) {
+        if (max <= 0) return new ArrayList<Entry>(0);
+
+        long end = this.next.get();
+        long start = Math.max(0, Math.max(end - this.entries.length(),
+                end - max));
+        List<Entry> found = new ArrayList<Entry>((int) (end - start));
+
+        for (long seq = start; seq < end; seq++) {
+            Entry entry = this.entries.get((int) (seq %
+                    this.entries.length()));
+            if (entry != null) found.add(entry);
+        }
+
+        return found;
+    }
+
+    /**
+     * Discards every recorded entry.
+     */
+    public final void clear() {
+        for (int i = 0; i < this.entries.length(); i++) {
+            this.entries.set(i, null);
+        }
+    }
+
+    public final int getCapacity() {
+        return this.entries.length();
+    }
+
+    /**
+     * A single recorded parse.
+     */
+    public static final class Entry {
+
+        private final long time;
+        private final String sender;
+        private final String input;
+        private final ResultType result;
+        private final String[] callArgs;
+        private final long nanos;
+
+        Entry(long time, String sender, String input, ResultType result,
+              String[] callArgs, long nanos) {
+            this.time = time;
+            this.sender = sender;
+            this.input = input;
+            this.result = result;
+            this.callArgs = callArgs;
+            this.nanos = nanos;
+        }
+
+        public long getTime() {
+            return this.time;
+        }
+
+        public String getSender() {
+            return this.sender;
+        }
+
+        public String getInput() {
+            return this.input;
+        }
+
+        public ResultType getResult() {
+            return this.result;
+        }
+
+        /**
+         * Returns the call arguments of the Command chosen, or null if no
+         * Command was chosen.
+         *
+         * @return String[]
+         */
+        public String[] getCallArgs() {
+            return (this.callArgs == null) ? null : this.callArgs.clone();
+        }
+
+        public long getNanos() {
+            return this.nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("[%s] %s: /%s -> %s%s (%.1fus)",
+                    new SimpleDateFormat("HH:mm:ss.SSS").format(
+                            new Date(this.time)),
+                    (this.sender == null) ? "-" : this.sender, this.input,
+                    this.result, (this.callArgs == null) ? "" :
+                            " " + Arrays.toString(this.callArgs),
+                    this.nanos / 1000.0D);
+        }
+    }
+}
@@ -33,5 +33,8 @@ package net.risenphoenix.commons.commands;
 public enum ResultType {
 	SUCCESS,
 	BAD_NUM_ARGS,
-	FAIL;
+	ILLEGAL_ARGS,
+	THROTTLED,
+	FAIL,
+	DENIED;
 }
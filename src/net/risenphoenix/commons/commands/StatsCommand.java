@@ -0,0 +1,112 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.commands;
+
+import net.risenphoenix.commons.Plugin;
+import net.risenphoenix.commons.util.LatencyHistogram;
+import org.bukkit.command.CommandSender;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Built-in Command which reports the latency statistics recorded by the
+ * CommandManager, slowest Commands first.</br>
+ * <p/>
+ * </br>The Command is registered like any other, with whatever call
+ * arguments and permissions the plugin chooses:
+ * <ul><li><em>Command stats = new StatsCommand(plugin, new String[]{ "ipc",
+ * "stats" }, CommandType.STATIC);<br>stats.setPermissions(...);<br>
+ * getCommandManager().registerCommand(stats);</em></li></ul>
+ */
+@Stateless
+public class StatsCommand extends Command {
+
+    private static final int MAX_ROWS = 10;
+
+    public StatsCommand(final Plugin plugin, String[] callArgs,
+                        CommandType type) {
+        super(plugin, callArgs, type);
+        setName("Command Statistics");
+        setHelp("Displays execution latency statistics for each command.");
+        setSyntax("stats");
+    }
+
+    @Override
+    public void onExecute(CommandSender sender, String[] args) {
+        List<CommandStatistics> rows = new ArrayList<CommandStatistics>();
+
+        for (CommandStatistics stats : getPlugin().getCommandManager()
+                .getAllStatistics()) {
+            if (stats.getExecuteTimes().getCount() > 0) rows.add(stats);
+        }
+
+        if (rows.isEmpty()) {
+            sendPlayerMessage(sender, getLocalString("CMD_STATS_NONE"));
+            return;
+        }
+
+        Collections.sort(rows, new Comparator<CommandStatistics>() {
+            @Override
+            public int compare(CommandStatistics a, CommandStatistics b) {
+                long pa = a.getExecuteTimes().getPercentile(99);
+                long pb = b.getExecuteTimes().getPercentile(99);
+                return (pa < pb) ? 1 : ((pa == pb) ? 0 : -1);
+            }
+        });
+
+        sendPlayerMessage(sender, getLocalString("CMD_STATS_HDR"));
+
+        for (int i = 0; i < rows.size() && i < MAX_ROWS; i++) {
+            sendPlayerMessage(sender, format(rows.get(i)), false);
+        }
+    }
+
+    private static String format(CommandStatistics stats) {
+        LatencyHistogram exec = stats.getExecuteTimes();
+        Command cmd = stats.getCommand();
+        String name = (cmd.getName() != null) ? cmd.getName() :
+                cmd.getClass().getSimpleName();
+
+        return String.format("%s: n=%d p50=%.2fms p95=%.2fms p99=%.2fms " +
+                "max=%.2fms parse=%.3fms err=%d", name, exec.getCount(),
+                millis(exec.getPercentile(50)), millis(exec.getPercentile(95)),
+                millis(exec.getPercentile(99)), millis(exec.getMax()),
+                millis(stats.getParseTimes().getPercentile(50)),
+                stats.getErrorCount());
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1000000.0D;
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.commands;
+
+import net.risenphoenix.commons.commands.parsers.CommandMatcher;
+import org.bukkit.command.CommandSender;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Edit-distance index over the literal call arguments of every registered
+ * Command, used to suggest the Commands a mistyped call was likely meant
+ * for.</br>
+ * <p/>
+ * </br>Each Command is keyed by the literal arguments following its root and
+ * leading up to its first variable argument, joined by spaces (<em>"ipc
+ * exempt-list ip"</em> <strong>-></strong> <em>"exempt-list ip"</em>). The
+ * keys of each root are held in a BK-tree, which prunes all but a small
+ * fraction of the keys on each query by the triangle inequality of the
+ * Levenshtein distance, so suggestions stay cheap with thousands of Commands
+ * registered.
+ */
+public class SuggestionIndex {
+
+    private final Map<String, Node> roots = new HashMap<String, Node>();
+    private final TreeSet<Integer> depths = new TreeSet<Integer>();
+
+    public SuggestionIndex(List<Command> commands) {
+        for (Command cmd : commands) {
+            this.insert(cmd);
+        }
+    }
+
+    private void insert(Command cmd) {
+        CommandMatcher matcher = CommandMatcher.compile(cmd);
+        StringBuilder sb = new StringBuilder();
+        int depth = 1;
+
+        if (matcher.length() == 0 ||
+                matcher.getKind(0) != CommandMatcher.LITERAL) return;
+
+        for (; depth < matcher.length(); depth++) {
+            if (matcher.getKind(depth) != CommandMatcher.LITERAL) break;
+            if (depth > 1) sb.append(' ');
+            sb.append(matcher.getLiteral(depth));
+        }
+
+        if (depth == 1) return;
+
+        Node root = this.roots.get(matcher.getLiteral(0));
+
+        if (root == null) {
+            root = new Node(null);
+            this.roots.put(matcher.getLiteral(0), root);
+        }
+
+        this.depths.add(depth);
+        root.insert(sb.toString(), cmd);
+    }
+
+    /**
+     * Returns up to <strong>limit</strong> Command paths close to the input
+     * passed, nearest first, leading to Commands the CommandSender can
+     * execute.
+     *
+     * @param input
+     * @param sender
+     * @param limit
+     * @return List<String>
+     */
+    public final List<String> suggest(ArgumentView input, CommandSender sender,
+                                      int limit) {
+        Map<String, Integer> found = new HashMap<String, Integer>();
+        Node root = this.roots.get(input.getRoot().toLowerCase(Locale.ENGLISH));
+
+        if (root == null || input.size() < 2) {
+            return new ArrayList<String>(0);
+        }
+
+        for (int depth : this.depths) {
+            String query = join(input, depth);
+            int length = query.length();
+            int tolerance = (length < 3) ? 1 : ((length < 12) ? 2 : 3);
+
+            this.search(root.child, query, tolerance, sender, found);
+        }
+
+        List<Map.Entry<String, Integer>> sorted =
+                new ArrayList<Map.Entry<String, Integer>>(found.entrySet());
+        Collections.sort(sorted, new Comparator<Map.Entry<String, Integer>>() {
+            @Override
+            public int compare(Map.Entry<String, Integer> a,
+                               Map.Entry<String, Integer> b) {
+                int byDistance = a.getValue().compareTo(b.getValue());
+                return (byDistance != 0) ? byDistance :
+                        a.getKey().compareTo(b.getKey());
+            }
+        });
+
+        List<String> paths = new ArrayList<String>();
+
+        for (int i = 0; i < sorted.size() && i < limit; i++) {
+            paths.add(input.getRoot() + " " + sorted.get(i).getKey());
+        }
+
+        return paths;
+    }
+
+    private void search(Node node, String query, int tolerance,
+                        CommandSender sender, Map<String, Integer> found) {
+        if (node == null) return;
+
+        int distance = distance(query, node.key);
+
+        if (distance <= tolerance && node.executableBy(sender)) {
+            Integer known = found.get(node.key);
+            if (known == null || distance < known) {
+                found.put(node.key, distance);
+            }
+        }
+
+        if (node.children == null) return;
+
+        for (Map.Entry<Integer, Node> child : node.children.entrySet()) {
+            int edge = child.getKey();
+
+            if (edge >= distance - tolerance && edge <= distance + tolerance) {
+                this.search(child.getValue(), query, tolerance, sender, found);
+            }
+        }
+    }
+
+    private static String join(ArgumentView input, int depth) {
+        StringBuilder sb = new StringBuilder();
+        int length = Math.min(depth, input.size());
+
+        for (int i = 1; i < length; i++) {
+            if (i > 1) sb.append(' ');
+            sb.append(input.get(i).toLowerCase(Locale.ENGLISH));
+        }
+
+        return sb.toString();
+    }
+
+    // Levenshtein distance over two rows
+    private static int distance(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            char c = a.charAt(i - 1);
+
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = (c == b.charAt(j - 1)) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1,
+                        previous[j] + 1), previous[j - 1] + cost);
+            }
+
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        return previous[b.length()];
+    }
+
+    private static final class Node {
+        private final String key;
+        private final List<Command> commands = new ArrayList<Command>(1);
+
+        private Node child = null;
+        private Map<Integer, Node> children = null;
+
+        private Node(String key) {
+            this.key = key;
+        }
+
+        // The root is a sentinel whose single child holds the first key
+        private void insert(String path, Command cmd) {
+            if (this.key == null) {
+                if (this.child == null) this.child = new Node(path);
+                this.child.insert(path, cmd);
+                return;
+            }
+
+            int distance = distance(path, this.key);
+
+            if (distance == 0) {
+                this.commands.add(cmd);
+                return;
+            }
+
+            if (this.children == null) {
+                this.children = new HashMap<Integer, Node>(4);
+            }
+
+            Node next = this.children.get(distance);
+
+            if (next == null) {
+                next = new Node(path);
+                this.children.put(distance, next);
+            }
+
+            next.insert(path, cmd);
+        }
+
+        private boolean executableBy(CommandSender sender) {
+            for (Command cmd : this.commands) {
+                if (cmd.canExecute(sender)) return true;
+            }
+
+            return false;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.commands;
+
+import net.risenphoenix.commons.Plugin;
+import org.bukkit.command.CommandSender;
+
+import java.util.List;
+
+/**
+ * Built-in Command which controls the CommandManager's {@link ParseTracer}
+ * and displays the parse decisions it has recorded.</br>
+ * <p/>
+ * </br>The Command takes an action, and an optional value, after its call
+ * arguments:
+ * <ul><li><em>on [player]</em> - traces every call, or only those of the
+ * player named</li>
+ * <li><em>off</em> - stops tracing, keeping what was recorded</li>
+ * <li><em>dump [count]</em> - displays the most recent entries (10 by
+ * default)</li>
+ * <li><em>clear</em> - discards every recorded entry</li></ul>
+ * The Command is registered like any other, with whatever call arguments and
+ * permissions the plugin chooses:
+ * <ul><li><em>Command trace = new TraceCommand(plugin, new String[]{ "ipc",
+ * "trace", "VAR_ARG", "VAR_ARG_OPT" }, CommandType.VARIABLE);<br>
+ * trace.setPermissions(...);<br>
+ * getCommandManager().registerCommand(trace);</em></li></ul>
+ */
+@Stateless
+public class TraceCommand extends Command {
+
+    private static final int DEFAULT_ROWS = 10;
+
+    public TraceCommand(final Plugin plugin, String[] callArgs,
+                        CommandType type) {
+        super(plugin, callArgs, type);
+        setName("Parse Trace");
+        setHelp("Records and displays how commands were parsed.");
+        setSyntax("trace <on [player] | off | dump [count] | clear>");
+    }
+
+    @Override
+    public void onExecute(CommandSender sender, ArgumentView args) {
+        ParseTracer tracer = getPlugin().getCommandManager().getTracer();
+        int base = this.getFirstVariable();
+
+        String action = args.has(base) ? args.get(base) : "dump";
+        String value = args.has(base + 1) ? args.get(base + 1) : null;
+
+        if (action.equalsIgnoreCase("on")) {
+            if (value == null) {
+                tracer.enable();
+            } else {
+                tracer.enable(value);
+            }
+
+            sendPlayerMessage(sender, getLocalString("TRACE_ON") +
+                    ((value == null) ? "*" : value));
+        } else if (action.equalsIgnoreCase("off")) {
+            tracer.disable();
+            sendPlayerMessage(sender, getLocalString("TRACE_OFF"));
+        } else if (action.equalsIgnoreCase("clear")) {
+            tracer.clear();
+            sendPlayerMessage(sender, getLocalString("TRACE_CLEARED"));
+        } else if (action.equalsIgnoreCase("dump")) {
+            int rows = (value == null) ? DEFAULT_ROWS :
+                    Math.max(1, args.getInt(base + 1, DEFAULT_ROWS));
+            this.dump(sender, tracer.getEntries(rows));
+        } else {
+            sendPlayerMessage(sender, getLocalString("ILL_ARGS_ERR"));
+        }
+    }
+
+    private void dump(CommandSender sender, List<ParseTracer.Entry> entries) {
+        if (entries.isEmpty()) {
+            sendPlayerMessage(sender, getLocalString("TRACE_NONE"));
+            return;
+        }
+
+        sendPlayerMessage(sender, getLocalString("TRACE_HDR"));
+
+        for (ParseTracer.Entry entry : entries) {
+            sendPlayerMessage(sender, entry.toString(), false);
+        }
+    }
+
+    // Position of the first argument which is not part of the call arguments
+    private int getFirstVariable() {
+        String[] callArgs = getCallArgs();
+
+        for (int i = 0; i < callArgs.length; i++) {
+            if (callArgs[i].equals("VAR_ARG") ||
+                    callArgs[i].equals("VAR_ARG_OPT")) {
+                return i;
+            }
+        }
+
+        return callArgs.length;
+    }
+}
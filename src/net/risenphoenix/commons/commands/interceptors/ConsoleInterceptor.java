@@ -0,0 +1,64 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.commands.interceptors;
+
+import net.risenphoenix.commons.commands.ArgumentView;
+import net.risenphoenix.commons.commands.Command;
+import net.risenphoenix.commons.commands.CommandChain;
+import net.risenphoenix.commons.commands.CommandInterceptor;
+import net.risenphoenix.commons.commands.ResultType;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+import java.util.logging.Level;
+
+/**
+ * Stops calls made from Console to Commands which cannot be executed from
+ * Console. Applies only to such Commands.
+ */
+public class ConsoleInterceptor implements CommandInterceptor {
+
+    @Override
+    public boolean appliesTo(Command cmd) {
+        return !cmd.canConsoleExecute();
+    }
+
+    @Override
+    public ResultType intercept(Command cmd, CommandSender sender,
+                                ArgumentView args, CommandChain chain) {
+        if (sender instanceof Player) {
+            return chain.proceed(cmd, sender, args);
+        }
+
+        cmd.sendConsoleMessage(Level.INFO, cmd.getLocalString("NO_CONSOLE"));
+        return ResultType.DENIED;
+    }
+}
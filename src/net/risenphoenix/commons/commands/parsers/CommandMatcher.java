@@ -0,0 +1,249 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.commands.parsers;
+
+import net.risenphoenix.commons.commands.ArgumentType;
+import net.risenphoenix.commons.commands.ArgumentView;
+import net.risenphoenix.commons.commands.Command;
+import net.risenphoenix.commons.commands.CommandType;
+import net.risenphoenix.commons.commands.ComparisonResult;
+
+import java.util.Locale;
+
+/**
+ * Immutable, precompiled form of a Command's call arguments.</br>
+ * <p/>
+ * </br>A matcher is compiled once when its Command is registered and is then
+ * compared directly against the input array. Unlike the Static, Variable and
+ * Dynamic parsers it replaces, matching neither copies nor pads the
+ * arguments, and it performs no allocation. The comparison rules of the three
+ * parsers are preserved exactly.</br>
+ * <p/>
+ * </br>Where the Command declares argument types, the converter for each
+ * variable position is also resolved when the matcher is compiled.
+ */
+public final class CommandMatcher {
+
+    public static final byte LITERAL = 0;
+    public static final byte VARIABLE = 1;
+    public static final byte OPTIONAL = 2;
+
+    private final Command cmd;
+    private final CommandType type;
+    private final String[] literals;
+    private final byte[] kinds;
+    private final ArgumentType[] types;
+    private final int minArity;
+    private final int maxArity;
+    private final boolean typed;
+
+    private CommandMatcher(Command cmd, CommandType type) {
+        String[] callArgs = cmd.getCallArgs();
+        int length = callArgs.length;
+        int min = 0;
+
+        this.cmd = cmd;
+        this.type = (type == null) ? CommandType.STATIC : type;
+        this.literals = new String[length];
+        this.kinds = new byte[length];
+        this.types = new ArgumentType[length];
+
+        ArgumentType[] declared = cmd.getArgumentTypes();
+        boolean typed = false;
+        int slot = 0;
+
+        for (int i = 0; i < length; i++) {
+            if (this.type != CommandType.STATIC &&
+                    callArgs[i].equals("VAR_ARG")) {
+                this.kinds[i] = VARIABLE;
+            } else if (this.type != CommandType.STATIC &&
+                    callArgs[i].equals("VAR_ARG_OPT")) {
+                this.kinds[i] = OPTIONAL;
+            } else {
+                this.kinds[i] = LITERAL;
+                this.literals[i] = callArgs[i].toLowerCase(Locale.ENGLISH);
+            }
+
+            if (this.kinds[i] != OPTIONAL) min = i + 1;
+
+            if (this.kinds[i] != LITERAL && declared != null &&
+                    slot < declared.length) {
+                this.types[i] = declared[slot++];
+                typed |= (this.types[i] != null &&
+                        this.types[i] != ArgumentType.STRING);
+            }
+        }
+
+        this.typed = typed;
+
+        this.minArity = min;
+        this.maxArity = (this.type == CommandType.DYNAMIC) ?
+                Integer.MAX_VALUE : length;
+    }
+
+    public static CommandMatcher compile(Command cmd) {
+        return new CommandMatcher(cmd, cmd.getType());
+    }
+
+    /**
+     * Compiles the Command passed using the comparison rules of the
+     * CommandType passed, rather than those of the Command's own type.
+     *
+     * @param cmd
+     * @param type
+     * @return CommandMatcher
+     */
+    public static CommandMatcher compile(Command cmd, CommandType type) {
+        return new CommandMatcher(cmd, type);
+    }
+
+    /**
+     * Compares the input passed (root command included) against this
+     * matcher.</br>
+     * <p/>
+     * </br>Returns <strong>GOOD</strong> when the input calls the Command,
+     * <strong>ARG_ERR</strong> when the input calls the Command with too few
+     * or too many arguments, and <strong>BAD</strong> otherwise.
+     *
+     * @param input
+     * @return ComparisonResult
+     */
+    public ComparisonResult match(String[] input) {
+        return this.match(ArgumentView.of(input));
+    }
+
+    /**
+     * Compares the ArgumentView passed against this matcher.
+     *
+     * @param input
+     * @return ComparisonResult
+     * @see #match(String[])
+     */
+    public ComparisonResult match(ArgumentView input) {
+        int length = this.kinds.length;
+        int size = input.size();
+
+        for (int i = 0; i < length; i++) {
+            byte kind = this.kinds[i];
+
+            if (kind == OPTIONAL) continue;
+
+            if (kind == VARIABLE) {
+                if (i >= size) return ComparisonResult.ARG_ERR;
+                continue;
+            }
+
+            if (i >= size || !this.literals[i].equalsIgnoreCase(input.get(i))) {
+                return ComparisonResult.BAD;
+            }
+        }
+
+        if (size > this.maxArity) return ComparisonResult.ARG_ERR;
+
+        return ComparisonResult.GOOD;
+    }
+
+    /**
+     * Converts the typed variable arguments of the ArgumentView passed into
+     * the array passed, which must be at least as long as the view. Returns
+     * the position of the first argument which could not be converted, or -1
+     * if all were converted.
+     *
+     * @param input
+     * @param values
+     * @return int
+     */
+    public int convert(ArgumentView input, Object[] values) {
+        int length = Math.min(this.types.length, input.size());
+
+        for (int i = 0; i < length; i++) {
+            if (this.types[i] == null) continue;
+
+            values[i] = this.types[i].convert(input.get(i));
+            if (values[i] == null) return i;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns true if any variable argument has a type other than STRING,
+     * and so requires conversion.
+     *
+     * @return boolean
+     */
+    public boolean isTyped() {
+        return this.typed;
+    }
+
+    public ArgumentType getArgumentType(int position) {
+        return this.types[position];
+    }
+
+    public boolean acceptsArity(int arity) {
+        return arity >= this.minArity && arity <= this.maxArity;
+    }
+
+    public Command getCommand() {
+        return this.cmd;
+    }
+
+    public CommandType getType() {
+        return this.type;
+    }
+
+    public int length() {
+        return this.kinds.length;
+    }
+
+    public byte getKind(int position) {
+        return this.kinds[position];
+    }
+
+    /**
+     * Returns the lower-cased literal at the position passed, or null if the
+     * position holds a variable argument.
+     *
+     * @param position
+     * @return String
+     */
+    public String getLiteral(int position) {
+        return this.literals[position];
+    }
+
+    public int getMinArity() {
+        return this.minArity;
+    }
+
+    public int getMaxArity() {
+        return this.maxArity;
+    }
+}
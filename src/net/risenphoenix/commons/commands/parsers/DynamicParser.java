@@ -32,8 +32,14 @@ package net.risenphoenix.commons.commands.parsers;
 
 import net.risenphoenix.commons.commands.Command;
 import net.risenphoenix.commons.commands.CommandManager;
+import net.risenphoenix.commons.commands.CommandType;
 import net.risenphoenix.commons.commands.ComparisonResult;
 
+/**
+ * @deprecated Commands are compiled into a {@link CommandMatcher} when they
+ * are registered. This parser compiles a new matcher on every call.
+ */
+@Deprecated
 public class DynamicParser extends Parser {
 
     public DynamicParser(CommandManager mngr, Command cmd, String[] args) {
@@ -42,43 +48,7 @@ public class DynamicParser extends Parser {
 
     @Override
     public ComparisonResult parseCommand() {
-        String[] COMMAND_ARGS = new String[this.cmd.getCallArgs().length];
-        String[] INPUT_ARGS = new String[this.cmd.getCallArgs().length];
-
-        for (int i = 0; i < this.cmd.getCallArgs().length; i++) {
-            COMMAND_ARGS[i] = this.cmd.getCallArgs()[i];
-        }
-
-        for (int i = 0; i < this.cmd.getCallArgs().length; i++) {
-            if (i >= this.input.length) {
-                INPUT_ARGS[i] = "null";
-            } else {
-                INPUT_ARGS[i] = this.input[i];
-            }
-        }
-
-        // Check for Matching Arguments
-        for (int i = 0; i < COMMAND_ARGS.length; i++) {
-            // Debug Output
-            if (this.cmdManager.debugMode()) {
-                System.out.println("Command Expected: " + COMMAND_ARGS[i]);
-                System.out.println("Received: " + INPUT_ARGS[i]);
-            }
-
-            if (COMMAND_ARGS[i].equals("VAR_ARG_OPT")) continue;
-
-            if (COMMAND_ARGS[i].equals("VAR_ARG") &&
-                    INPUT_ARGS[i].equals("null")) {
-                return ComparisonResult.ARG_ERR;
-            } else if (COMMAND_ARGS[i].equals("VAR_ARG")) {
-                continue;
-            }
-
-            if (!INPUT_ARGS[i].equalsIgnoreCase(COMMAND_ARGS[i])) {
-                return ComparisonResult.BAD;
-            }
-        }
-
-        return ComparisonResult.GOOD;
+        return CommandMatcher.compile(this.cmd, CommandType.DYNAMIC)
+                .match(this.input);
     }
 }
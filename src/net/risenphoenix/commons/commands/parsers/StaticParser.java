@@ -32,8 +32,14 @@ package net.risenphoenix.commons.commands.parsers;
 
 import net.risenphoenix.commons.commands.Command;
 import net.risenphoenix.commons.commands.CommandManager;
+import net.risenphoenix.commons.commands.CommandType;
 import net.risenphoenix.commons.commands.ComparisonResult;
 
+/**
+ * @deprecated Commands are compiled into a {@link CommandMatcher} when they
+ * are registered. This parser compiles a new matcher on every call.
+ */
+@Deprecated
 public class StaticParser extends Parser {
 
     public StaticParser(CommandManager mngr, Command cmd, String[] args) {
@@ -42,55 +48,7 @@ public class StaticParser extends Parser {
 
     @Override
     public ComparisonResult parseCommand() {
-        int callSize = this.cmd.getCallArgs().length;
-        int inputSize = this.input.length;
-
-        String[] COMMAND_ARGS;
-        String[] INPUT_ARGS;
-
-        if (callSize > inputSize) {
-            COMMAND_ARGS = new String[callSize];
-            INPUT_ARGS = new String[callSize];
-        } else {
-            COMMAND_ARGS = new String[inputSize];
-            INPUT_ARGS = new String[inputSize];
-        }
-
-        for (int i = 0; i < this.cmd.getCallArgs().length; i++) {
-            COMMAND_ARGS[i] = this.cmd.getCallArgs()[i];
-        }
-        for (int i = 0; i < this.input.length; i++) {
-            INPUT_ARGS[i] = this.input[i];
-        }
-
-        if (callSize > inputSize) {
-            for (int i = inputSize; i < INPUT_ARGS.length; i++) {
-                INPUT_ARGS[i] = "null";
-            }
-        } else {
-            for (int i = callSize; i < COMMAND_ARGS.length; i++) {
-                COMMAND_ARGS[i] = "null";
-            }
-        }
-
-        // Check for Matching Arguments
-        for (int i = 0; i < COMMAND_ARGS.length; i++) {
-            // Debug Output
-            if (this.cmdManager.debugMode()) {
-                System.out.println("Command Expected: " + COMMAND_ARGS[i]);
-                System.out.println("Received: " + INPUT_ARGS[i]);
-            }
-
-            if (COMMAND_ARGS[i].equals("null")) {
-                return ComparisonResult.ARG_ERR;
-            }
-
-            if (!INPUT_ARGS[i].equalsIgnoreCase(COMMAND_ARGS[i])) {
-                return ComparisonResult.BAD;
-            }
-        }
-
-        return ComparisonResult.GOOD;
+        return CommandMatcher.compile(this.cmd, CommandType.STATIC)
+                .match(this.input);
     }
-
 }
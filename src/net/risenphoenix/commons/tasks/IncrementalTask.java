@@ -0,0 +1,78 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.tasks;
+
+/**
+ * A long-running job which is performed a small unit at a time, so that it
+ * can be spread over many server ticks by the {@link TaskRunner} instead of
+ * freezing the server while it runs.</br>
+ * <p/>
+ * </br>Units of work are always performed on the server main thread, so they
+ * may use the Bukkit API freely. Each unit should take well under the
+ * runner's per-tick budget; the runner checks the time between units, never
+ * during one.
+ */
+public abstract class IncrementalTask {
+
+    /**
+     * Performs the next unit of work. Returns <strong>TRUE</strong> if work
+     * remains, or <strong>FALSE</strong> once the task is complete.
+     *
+     * @return boolean
+     */
+    public abstract boolean step();
+
+    /**
+     * Returns the total number of units this task will perform, or -1 if
+     * that is not known in advance. Used to report progress as a
+     * percentage.
+     *
+     * @return long
+     */
+    public long getSize() {
+        return -1;
+    }
+
+    /**
+     * Called on the main thread once the task is complete.
+     */
+    public void onComplete() {
+        // Do nothing by default
+    }
+
+    /**
+     * Called on the main thread if the task is cancelled before it is
+     * complete, or is stopped because a unit of work threw an exception.
+     */
+    public void onCancel() {
+        // Do nothing by default
+    }
+}
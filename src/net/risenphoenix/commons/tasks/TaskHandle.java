@@ -0,0 +1,133 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.tasks;
+
+import org.bukkit.command.CommandSender;
+
+/**
+ * A task submitted to the {@link TaskRunner}, through which its progress
+ * can be followed and the task cancelled. Its methods may be called from
+ * any thread.
+ */
+public final class TaskHandle {
+
+    private final String name;
+    private final IncrementalTask task;
+    private final CommandSender sender;
+
+    private volatile long completed = 0;
+    private volatile boolean done = false;
+    private volatile boolean cancelled = false;
+
+    // Main thread only
+    long nextReport;
+
+    TaskHandle(String name, IncrementalTask task, CommandSender sender) {
+        this.name = name;
+        this.task = task;
+        this.sender = sender;
+    }
+
+    /**
+     * Requests that the task be stopped. The task stops before its next unit
+     * of work, and its onCancel() method is then called on the main thread.
+     * Has no effect once the task is done.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    /**
+     * Returns whether the task has stopped, whether because it is complete
+     * or because it was cancelled.
+     *
+     * @return boolean
+     */
+    public boolean isDone() {
+        return this.done;
+    }
+
+    /**
+     * Returns the number of units of work performed so far.
+     *
+     * @return long
+     */
+    public long getCompleted() {
+        return this.completed;
+    }
+
+    /**
+     * Returns the fraction of the task performed so far, from 0 to 1, or -1
+     * if the size of the task is not known.
+     *
+     * @return double
+     */
+    public double getProgress() {
+        long size = this.task.getSize();
+        if (size < 0) return -1;
+        if (size == 0) return 1;
+
+        return Math.min(1.0D, (double) this.completed / size);
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public IncrementalTask getTask() {
+        return this.task;
+    }
+
+    /**
+     * Returns the CommandSender to whom progress is reported, or null.
+     *
+     * @return CommandSender
+     */
+    public CommandSender getSender() {
+        return this.sender;
+    }
+
+    // Performs one unit of work. Returns false once the task is complete.
+    boolean step() {
+        boolean more = this.task.step();
+        this.completed++;
+
+        return more;
+    }
+
+    void finish() {
+        this.done = true;
+    }
+}
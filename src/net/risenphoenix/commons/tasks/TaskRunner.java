@@ -0,0 +1,322 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.tasks;
+
+import net.risenphoenix.commons.Plugin;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+/**
+ * Performs {@link IncrementalTask}s on the server main thread, a unit of work
+ * at a time, within a fixed time budget per tick.</br>
+ * <p/>
+ * </br>Each tick, the runner performs units of the running tasks in turn
+ * until the budget (2 ms by default) is spent, then resumes where it left
+ * off on the next tick. Work which would freeze the server for seconds is
+ * thereby spread over many ticks. Progress is reported periodically to the
+ * CommandSender who submitted each task.</br>
+ * <p/>
+ * </br>The runner only occupies a scheduler slot while it has tasks to run.
+ * Tasks may be submitted from any thread.
+ */
+public class TaskRunner {
+
+    private static final long DEFAULT_BUDGET = TimeUnit.MILLISECONDS.toNanos(2);
+    private static final long DEFAULT_REPORT_INTERVAL = 5000L;
+
+    private final Plugin plugin;
+    private final Queue<TaskHandle> submitted =
+            new ConcurrentLinkedQueue<TaskHandle>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    // Main thread only
+    private final ArrayDeque<TaskHandle> running =
+            new ArrayDeque<TaskHandle>();
+    private BukkitTask timer;
+
+    private volatile long budget = DEFAULT_BUDGET;
+    private volatile long reportInterval = DEFAULT_REPORT_INTERVAL;
+
+    public TaskRunner(final Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Submits the task passed. Progress is reported to the CommandSender
+     * passed, which may be null.
+     *
+     * @param name used to identify the task in progress reports
+     * @param task
+     * @param sender
+     * @return TaskHandle
+     */
+    public final TaskHandle submit(String name, IncrementalTask task,
+                                   CommandSender sender) {
+        TaskHandle handle = new TaskHandle(name, task, sender);
+        this.submitted.add(handle);
+
+        if (this.scheduled.compareAndSet(false, true)) {
+            this.plugin.runOnMainThread(new Runnable() {
+                @Override
+                public void run() {
+                    start();
+                }
+            });
+        }
+
+        return handle;
+    }
+
+    /**
+     * Cancels every task submitted by the CommandSender passed.
+     *
+     * @param sender
+     * @return the number of tasks cancelled
+     */
+    public final int cancel(CommandSender sender) {
+        int cancelled = 0;
+
+        for (TaskHandle handle : this.getTasks()) {
+            if (handle.getSender() != null &&
+                    handle.getSender().equals(sender)) {
+                handle.cancel();
+                cancelled++;
+            }
+        }
+
+        return cancelled;
+    }
+
+    /**
+     * Returns the tasks which have been submitted and are not yet done.
+     *
+     * @return List<TaskHandle>
+     */
+    public final List<TaskHandle> getTasks() {
+        List<TaskHandle> tasks = new ArrayList<TaskHandle>(this.submitted);
+
+        synchronized (this.running) {
+            tasks.addAll(this.running);
+        }
+
+        return tasks;
+    }
+
+    /**
+     * Sets the time the runner may spend performing tasks in each tick.
+     *
+     * @param time
+     * @param unit
+     */
+    public final void setTickBudget(long time, TimeUnit unit) {
+        this.budget = unit.toNanos(time);
+    }
+
+    public final long getTickBudget(TimeUnit unit) {
+        return unit.convert(this.budget, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Sets the interval, in milliseconds, at which progress is reported to
+     * the CommandSender of each task. An interval of 0 disables reports.
+     *
+     * @param millis
+     */
+    public final void setReportInterval(long millis) {
+        this.reportInterval = millis;
+    }
+
+    /**
+     * Cancels all tasks and stops the runner. Called when the Plugin is
+     * disabled; onCancel() is called for each task which was running.
+     */
+    public final void shutdown() {
+        for (TaskHandle handle : this.getTasks()) handle.cancel();
+
+        this.drain();
+
+        while (true) {
+            TaskHandle handle;
+
+            synchronized (this.running) {
+                handle = this.running.poll();
+            }
+
+            if (handle == null) break;
+            this.advance(handle);
+        }
+
+        this.stop();
+        this.scheduled.set(false);
+    }
+
+    // Main thread: begins running tasks each tick
+    private void start() {
+        if (this.timer != null) return;
+
+        this.timer = this.plugin.getServer().getScheduler().runTaskTimer(
+                this.plugin, new Runnable() {
+                    @Override
+                    public void run() {
+                        tick(budget);
+                    }
+                }, 1L, 1L);
+    }
+
+    private void stop() {
+        if (this.timer != null) {
+            this.timer.cancel();
+            this.timer = null;
+        }
+    }
+
+    private void drain() {
+        TaskHandle handle;
+
+        synchronized (this.running) {
+            while ((handle = this.submitted.poll()) != null) {
+                handle.nextReport = System.currentTimeMillis() +
+                        this.reportInterval;
+                this.running.add(handle);
+            }
+        }
+    }
+
+    // Main thread: performs units of the running tasks in turn, until the
+    // budget passed is spent or no tasks remain
+    private void tick(long budget) {
+        this.drain();
+
+        long deadline = System.nanoTime() + budget;
+
+        do {
+            TaskHandle handle;
+
+            synchronized (this.running) {
+                handle = this.running.poll();
+            }
+
+            if (handle == null) break;
+
+            if (this.advance(handle)) {
+                synchronized (this.running) {
+                    this.running.add(handle);
+                }
+            }
+        } while (System.nanoTime() - deadline < 0);
+
+        this.report();
+
+        if (this.isIdle()) {
+            this.scheduled.set(false);
+
+            // A task may have been submitted while the flag was still set
+            if (this.submitted.isEmpty() ||
+                    !this.scheduled.compareAndSet(false, true)) {
+                this.stop();
+            }
+        }
+    }
+
+    // Performs one unit of the task passed. Returns false once it is done.
+    private boolean advance(TaskHandle handle) {
+        if (handle.isCancelled()) {
+            handle.finish();
+            this.notify(handle, "TASK_CANCELLED", "");
+            handle.getTask().onCancel();
+            return false;
+        }
+
+        try {
+            if (handle.step()) return true;
+        } catch (RuntimeException e) {
+            handle.finish();
+            this.plugin.sendConsoleMessage(Level.SEVERE, this.plugin
+                    .getLocalizationManager().getLocalString("TASK_ERR") +
+                    handle.getName() + " (" + e + ")");
+            this.notify(handle, "TASK_FAILED", "");
+            handle.getTask().onCancel();
+            return false;
+        }
+
+        handle.finish();
+        this.notify(handle, "TASK_DONE", "");
+        handle.getTask().onComplete();
+        return false;
+    }
+
+    private void report() {
+        long interval = this.reportInterval;
+        if (interval <= 0) return;
+
+        long now = System.currentTimeMillis();
+
+        synchronized (this.running) {
+            for (TaskHandle handle : this.running) {
+                if (now < handle.nextReport) continue;
+
+                handle.nextReport = now + interval;
+                double progress = handle.getProgress();
+
+                this.notify(handle, "TASK_PROGRESS", (progress < 0) ?
+                        handle.getCompleted() + "" :
+                        String.format("%.0f%%", progress * 100.0D));
+            }
+        }
+    }
+
+    private void notify(TaskHandle handle, String key, String detail) {
+        CommandSender sender = handle.getSender();
+
+        if (sender == null) return;
+        if (sender instanceof Player && !((Player) sender).isOnline()) return;
+
+        this.plugin.sendPlayerMessage(sender, this.plugin
+                .getLocalizationManager().getLocalString(key) +
+                handle.getName() + ((detail.isEmpty()) ? "" : ": " + detail));
+    }
+
+    private boolean isIdle() {
+        synchronized (this.running) {
+            return this.running.isEmpty() && this.submitted.isEmpty();
+        }
+    }
+}
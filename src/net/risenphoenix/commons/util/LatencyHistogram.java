@@ -0,0 +1,138 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free, fixed-memory histogram of latencies in nanoseconds.</br>
+ * <p/>
+ * </br>Values are recorded into log-linear buckets: each power of two is
+ * split into eight sub-buckets, giving a relative error of at most 12.5%
+ * across the full range of a long. Recording is a handful of atomic
+ * increments, and the histogram never allocates after construction, so it
+ * may be updated from any thread on every call.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT + SUB_COUNT;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+
+        this.buckets.incrementAndGet(indexOf(nanos));
+        this.count.incrementAndGet();
+        this.total.addAndGet(nanos);
+
+        long current = this.max.get();
+        while (nanos > current) {
+            if (this.max.compareAndSet(current, nanos)) break;
+            current = this.max.get();
+        }
+    }
+
+    public long getCount() {
+        return this.count.get();
+    }
+
+    public long getMax() {
+        return this.max.get();
+    }
+
+    public long getMean() {
+        long n = this.count.get();
+        return (n == 0) ? 0 : this.total.get() / n;
+    }
+
+    /**
+     * Returns the upper bound of the bucket holding the percentile passed,
+     * where the percentile is a value between 0 and 100.
+     *
+     * @param percentile
+     * @return long
+     */
+    public long getPercentile(double percentile) {
+        long n = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            n += this.buckets.get(i);
+        }
+
+        if (n == 0) return 0;
+
+        long rank = (long) Math.ceil((percentile / 100.0D) * n);
+        if (rank < 1) rank = 1;
+
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += this.buckets.get(i);
+            if (seen >= rank) return Math.min(upperBound(i), this.max.get());
+        }
+
+        return this.max.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            this.buckets.set(i, 0);
+        }
+
+        this.count.set(0);
+        this.total.set(0);
+        this.max.set(0);
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_COUNT) return (int) value;
+
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BITS;
+        return ((shift + 1) << SUB_BITS) +
+                (int) ((value >>> shift) & (SUB_COUNT - 1));
+    }
+
+    private static long upperBound(int index) {
+        if (index < SUB_COUNT) return index;
+
+        int shift = (index >>> SUB_BITS) - 1;
+        long mantissa = SUB_COUNT + (index & (SUB_COUNT - 1));
+        long upper = ((mantissa + 1) << shift) - 1;
+
+        return (upper < 0) ? Long.MAX_VALUE : upper;
+    }
+}
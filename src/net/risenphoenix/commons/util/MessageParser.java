@@ -30,17 +30,28 @@
 
 package net.risenphoenix.commons.util;
 
+import net.risenphoenix.commons.commands.ArgumentView;
+
 public class MessageParser {
 
     private String[] args;
     private int startPos;
+    private ArgumentView view = null;
 
     public MessageParser(String[] args, int startPos) {
         this.args = args;
         this.startPos = startPos;
     }
 
+    // Positions are those of the view, where the root command is position 0
+    public MessageParser(ArgumentView view, int startPos) {
+        this.view = view;
+        this.startPos = startPos;
+    }
+
     public String parseMessage() {
+        if (this.view != null) return this.view.joinFrom(this.startPos);
+
         String message = null;
 
         if (args.length >= startPos) {
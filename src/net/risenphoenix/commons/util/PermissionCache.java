@@ -0,0 +1,281 @@
+/*
+ * Copyright © 2014 Jacob Keep (Jnk1296). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of JuNK Software nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.risenphoenix.commons.util;
+
+import net.risenphoenix.commons.Plugin;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerCommandPreprocessEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerKickEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.server.ServerCommandEvent;
+import org.bukkit.permissions.Permission;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Caches the outcome of permission checks per Player and per permission.</br>
+ * <p/>
+ * </br>With a permissions plugin installed, each call to hasPermission() may
+ * walk a large inheritance graph. This cache remembers each decision for the
+ * Player it was made for, and is shared by Command.canExecute() and
+ * Broadcast. Operators and non-Player senders are always checked directly.
+ * </br>
+ * <p/>
+ * </br>Bukkit raises no event when a Player's permissions are recalculated,
+ * so a Player's decisions are dropped when they join, quit, are kicked or
+ * change world, and in any case after a short time-to-live. When a command
+ * which may change permissions or operator status is run, every decision is
+ * dropped as the command is issued, and again a tick and a second later, as
+ * permission plugins such as LuckPerms apply changes asynchronously. A
+ * change applied later still than that is only seen once the decisions
+ * expire. Plugins which change permissions themselves should call
+ * {@link #invalidate(UUID)}.
+ */
+public class PermissionCache implements Listener {
+
+    private static final long DEFAULT_TTL = 30000L;
+
+    // Ticks after an invalidating command at which decisions are dropped
+    private static final long[] RECHECK_DELAYS = { 1L, 20L };
+
+    private final Plugin plugin;
+
+    private final ConcurrentMap<UUID, Decisions> players =
+            new ConcurrentHashMap<UUID, Decisions>();
+    private final Set<String> invalidatingCommands =
+            new CopyOnWriteArraySet<String>();
+
+    private volatile long ttl = DEFAULT_TTL;
+
+    /**
+     * Creates a cache which drops decisions only as an invalidating command
+     * is issued, not again once it has run.
+     */
+    public PermissionCache() {
+        this(null);
+    }
+
+    /**
+     * Creates a cache which uses the scheduler of the Plugin passed to drop
+     * decisions again after an invalidating command has run.
+     *
+     * @param plugin
+     */
+    public PermissionCache(final Plugin plugin) {
+        this.plugin = plugin;
+
+        String[] defaults = { "op", "deop", "pex", "permissions", "perm",
+                "perms", "lp", "luckperms", "manuadd", "manudel", "manuaddp",
+                "manudelp", "mangaddp", "mangdelp", "group", "user" };
+
+        for (String label : defaults) {
+            this.invalidatingCommands.add(label);
+        }
+    }
+
+    /**
+     * Returns true if the CommandSender passed holds every permission in the
+     * array passed, or is an operator. A null or empty array always passes.
+     *
+     * @param sender
+     * @param perms
+     * @return boolean
+     */
+    public final boolean hasPermissions(CommandSender sender,
+                                        Permission[] perms) {
+        if (perms == null || perms.length == 0 || sender.isOp()) return true;
+
+        if (!(sender instanceof Player)) {
+            for (Permission perm : perms) {
+                if (!sender.hasPermission(perm)) return false;
+            }
+
+            return true;
+        }
+
+        for (Permission perm : perms) {
+            if (!this.hasPermission(sender, perm)) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns true if the CommandSender passed holds the permission passed,
+     * or is an operator.
+     *
+     * @param sender
+     * @param perm
+     * @return boolean
+     */
+    public final boolean hasPermission(CommandSender sender, Permission perm) {
+        if (sender.isOp()) return true;
+        if (!(sender instanceof Player)) return sender.hasPermission(perm);
+
+        Decisions decisions = this.getDecisions(((Player) sender)
+                .getUniqueId());
+        Boolean held = decisions.values.get(perm.getName());
+
+        if (held == null) {
+            held = sender.hasPermission(perm);
+            decisions.values.put(perm.getName(), held);
+        }
+
+        return held;
+    }
+
+    public final void invalidate(UUID id) {
+        this.players.remove(id);
+    }
+
+    public final void invalidateAll() {
+        this.players.clear();
+    }
+
+    /**
+     * Sets how long, in milliseconds, decisions are kept before they are
+     * checked again.
+     *
+     * @param millis
+     */
+    public final void setTimeToLive(long millis) {
+        this.ttl = Math.max(0, millis);
+    }
+
+    /**
+     * Registers a command label which, when run by anyone, drops every cached
+     * decision. Used for permission plugins not covered by default.
+     *
+     * @param label
+     */
+    public final void addInvalidatingCommand(String label) {
+        this.invalidatingCommands.add(label.toLowerCase(Locale.ENGLISH));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent event) {
+        this.invalidate(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        this.invalidate(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onKick(PlayerKickEvent event) {
+        this.invalidate(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldChange(PlayerChangedWorldEvent event) {
+        this.invalidate(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerCommand(PlayerCommandPreprocessEvent event) {
+        this.checkCommand(event.getMessage());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onServerCommand(ServerCommandEvent event) {
+        this.checkCommand(event.getCommand());
+    }
+
+    private void checkCommand(String line) {
+        int start = line.startsWith("/") ? 1 : 0;
+        int end = line.indexOf(' ', start);
+        String label = line.substring(start, (end < 0) ? line.length() : end)
+                .toLowerCase(Locale.ENGLISH);
+
+        // Strip any plugin prefix, as in "/bukkit:op"
+        int colon = label.indexOf(':');
+        if (colon >= 0) label = label.substring(colon + 1);
+
+        if (!this.invalidatingCommands.contains(label)) return;
+
+        this.invalidateAll();
+        if (this.plugin == null) return;
+
+        // The command has not run yet; nor, if asynchronous, its change
+        Runnable invalidation = new Runnable() {
+            @Override
+            public void run() {
+                invalidateAll();
+            }
+        };
+
+        for (long delay : RECHECK_DELAYS) {
+            this.plugin.getServer().getScheduler().runTaskLater(this.plugin,
+                    invalidation, delay);
+        }
+    }
+
+    private Decisions getDecisions(UUID id) {
+        long now = System.currentTimeMillis();
+        Decisions decisions = this.players.get(id);
+
+        if (decisions == null || decisions.expires <= now) {
+            Decisions created = new Decisions(now + this.ttl);
+
+            if (decisions == null) {
+                decisions = this.players.putIfAbsent(id, created);
+                if (decisions == null) decisions = created;
+            } else {
+                this.players.replace(id, decisions, created);
+                decisions = created;
+            }
+        }
+
+        return decisions;
+    }
+
+    private static final class Decisions {
+        private final long expires;
+        private final ConcurrentMap<String, Boolean> values =
+                new ConcurrentHashMap<String, Boolean>(8);
+
+        private Decisions(long expires) {
+            this.expires = expires;
+        }
+    }
+}